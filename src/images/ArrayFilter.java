@@ -8,258 +8,1050 @@ import java.util.Map;
 import java.util.Random;
 
 /**
- * A utility class for filtering and transforming 3-dimensional RGB image arrays.
+ * A utility class for filtering and transforming RGB image buffers.
  */
 public final class ArrayFilter {
 
-  // Filter variables
-  private static double[][] blurKernel = {
+  // Filter variables, shared with the model which composes them
+  static final CompiledKernel blurKernel = CompiledKernel.compile(new double[][] {
           {0.0625, 0.125, 0.0625},
           {0.125, 0.25, 0.125},
           {0.0625, 0.125, 0.0625}
-  };
-  private static double[][] sharpenKernel = {
+  });
+  static final CompiledKernel sharpenKernel = CompiledKernel.compile(new double[][] {
           {-0.125, -0.125, -0.125, -0.125, -0.125},
           {-0.125, 0.25, 0.25, 0.25, -0.125},
           {-0.125, 0.25, 1, 0.25, -0.125},
           {-0.125, 0.25, 0.25, 0.25, -0.125},
           {-0.125, -0.125, -0.125, -0.125, -0.125}
-  };
-
-  // Color transformation variables
-  private static double[][] greyscaleMatrix = {
-          {0.2126, 0.7152, 0.0722},
-          {0.2126, 0.7152, 0.0722},
-          {0.2126, 0.7152, 0.0722}
-  };
-  private static double[][] sepiaMatrix = {
-          {0.393, 0.769, 0.189},
-          {0.349, 0.686, 0.168},
-          {0.272, 0.534, 0.131}
-  };
-
-  private static double[][] sobelEdgeX = {
-          {1, 0, -1},
-          {2, 0, -2},
-          {1, 0, -1}
-  };
-
-  private static double[][] sobelEdgeY = {
-          {1, 2, 1},
-          {0, 0, 0},
-          {-1, -2, -1}
-  };
-
+  });
+
+  // Color transformation variables, shared with the model which chains them
+  static final CompiledColorMatrix greyscaleMatrix =
+          CompiledColorMatrix.compile(new double[][] {
+                  {0.2126, 0.7152, 0.0722},
+                  {0.2126, 0.7152, 0.0722},
+                  {0.2126, 0.7152, 0.0722}
+          });
+  static final CompiledColorMatrix sepiaMatrix =
+          CompiledColorMatrix.compile(new double[][] {
+                  {0.393, 0.769, 0.189},
+                  {0.349, 0.686, 0.168},
+                  {0.272, 0.534, 0.131}
+          });
+
+
+  // Number of box blurs a gaussian blur is approximated with, and the largest blur radius, which
+  // keeps the running sums of a box blur well inside an int
+  private static final int GAUSSIAN_BOX_PASSES = 3;
+  private static final int MAX_BLUR_RADIUS = 1 << 16;
+
+  // Fewest pixels a tile of adaptive histogram equalization spans along each axis, which keeps
+  // the 768 table entries of every tile fewer than the pixels of the image
+  private static final int MIN_TILE_SIZE = 32;
 
   // Private constructor
   private ArrayFilter() {
   }
 
+  /**
+   * Sets how many threads the operations of this class may use. Images are split into bands of
+   * rows that are processed in parallel on a shared pool, the result is the same for any number
+   * of threads.
+   *
+   * @param threads the number of threads, 1 to run every operation on the calling thread
+   * @throws IllegalArgumentException if the number of threads is less than 1
+   */
+  public static void setParallelism(int threads) throws IllegalArgumentException {
+    RowBands.setParallelism(threads);
+  }
+
+  /**
+   * Returns how many threads the operations of this class may use. Defaults to the number of
+   * available processors.
+   *
+   * @return the number of threads
+   */
+  public static int getParallelism() {
+    return RowBands.getParallelism();
+  }
+
   /*
    * ###################################### Filter methods ######################################
    */
 
   /**
-   * Filters a 3D RGB image array to create a blur effect.
+   * Filters an RGB image to create a blur effect.
    *
-   * @param rgbArray the RGB image array to be transformed
-   * @return a 3D array of the transformed image
+   * @param image the RGB image to be transformed
+   * @return a new buffer of the transformed image
    */
-  public static int[][][] applyBlur(int[][][] rgbArray) {
-    return applyKernel(rgbArray, blurKernel);
+  public static RgbBuffer applyBlur(RgbBuffer image) {
+    return applyBlur(image, image.createBlank(image.getWidth(), image.getHeight()));
   }
 
   /**
-   * Filters a 3D RGB image array to create a sharpening effect.
+   * Filters an RGB image to create a blur effect, writing the result into a given buffer.
    *
-   * @param rgbArray the RGB image array to be transformed
-   * @return a 3D array of the transformed image
+   * @param image       the RGB image to be transformed
+   * @param destination buffer of the same size to overwrite, must not be the image itself
+   * @return the destination buffer holding the transformed image
    */
-  public static int[][][] applySharpen(int[][][] rgbArray) {
-    return applyKernel(rgbArray, sharpenKernel);
+  public static RgbBuffer applyBlur(RgbBuffer image, RgbBuffer destination) {
+    return applyBlur(image, destination, EdgeMode.ZERO);
   }
 
   /**
-   * Private method for applying a filter to each pixel in a 3D RGB image array. Filters each pixel
-   * based on the values of pixels around it's location in the same color channel.
+   * Filters an RGB image to create a blur effect, writing the result into a given buffer and
+   * treating pixels beyond the edges of the image as the edge mode says.
    *
-   * @param rgbArray the RGB image array to be transformed
-   * @param kernel   the filter kernel to use
-   * @return a 3D array of the transformed image
+   * @param image       the RGB image to be transformed
+   * @param destination buffer of the same size to overwrite, must not be the image itself
+   * @param edgeMode    how pixels outside the image are treated
+   * @return the destination buffer holding the transformed image
    */
-  private static int[][][] applyKernel(int[][][] rgbArray, double[][] kernel) {
+  public static RgbBuffer applyBlur(RgbBuffer image, RgbBuffer destination, EdgeMode edgeMode) {
+    return applyKernel(image, destination, blurKernel, edgeMode);
+  }
 
-    int[][][] finalArray = deepCopy3dArray(rgbArray);
+  /**
+   * Filters an RGB image to create a sharpening effect.
+   *
+   * @param image the RGB image to be transformed
+   * @return a new buffer of the transformed image
+   */
+  public static RgbBuffer applySharpen(RgbBuffer image) {
+    return applySharpen(image, image.createBlank(image.getWidth(), image.getHeight()));
+  }
 
-    for (int r = 0; r < rgbArray.length; r++) {
-      for (int c = 0; c < rgbArray[r].length; c++) {
-        for (int z = 0; z < rgbArray[r][c].length; z++) {
+  /**
+   * Filters an RGB image to create a sharpening effect, writing the result into a given buffer.
+   *
+   * @param image       the RGB image to be transformed
+   * @param destination buffer of the same size to overwrite, must not be the image itself
+   * @return the destination buffer holding the transformed image
+   */
+  public static RgbBuffer applySharpen(RgbBuffer image, RgbBuffer destination) {
+    return applySharpen(image, destination, EdgeMode.ZERO);
+  }
 
-          int distanceToCenterX;
-          int distanceToCenterY;
-          double filterResult = 0;
+  /**
+   * Filters an RGB image to create a sharpening effect, writing the result into a given buffer and
+   * treating pixels beyond the edges of the image as the edge mode says.
+   *
+   * @param image       the RGB image to be transformed
+   * @param destination buffer of the same size to overwrite, must not be the image itself
+   * @param edgeMode    how pixels outside the image are treated
+   * @return the destination buffer holding the transformed image
+   */
+  public static RgbBuffer applySharpen(RgbBuffer image, RgbBuffer destination,
+                                       EdgeMode edgeMode) {
+    return applyKernel(image, destination, sharpenKernel, edgeMode);
+  }
 
-          for (int kernelR = 0; kernelR < kernel.length; kernelR++) {
-            for (int kernelC = 0; kernelC < kernel.length; kernelC++) {
+  /**
+   * Filters an RGB image with a given kernel, writing the result into a given buffer. The center
+   * of the kernel is at row (height - 1) / 2 and column (width - 1) / 2, and each weight applies
+   * to the pixel under it. The kernel is analysed for the fastest way to apply it once and cached,
+   * so applying the same weights again skips the analysis. Large kernels are applied through the
+   * fast Fourier transform when that is cheaper, which matches applying them directly up to
+   * rounding, unless their weights are binary fractions that can be summed exactly.
+   *
+   * @param image       the RGB image to be transformed
+   * @param destination buffer of the same size to overwrite, must not be the image itself
+   * @param kernel      the filter kernel, every row the same length
+   * @param edgeMode    how pixels outside the image are treated
+   * @return the destination buffer holding the transformed image
+   * @throws IllegalArgumentException if the kernel is empty, its rows differ in length or a weight
+   *                                  is not a finite number
+   */
+  public static RgbBuffer applyConvolution(RgbBuffer image, RgbBuffer destination,
+                                           double[][] kernel, EdgeMode edgeMode)
+          throws IllegalArgumentException {
+    return applyKernel(image, destination, CompiledKernel.compile(kernel), edgeMode);
+  }
 
-              // Relative distance to center of kernel. Where the center is (kernel.length - 1) / 2
-              distanceToCenterX = kernelR - ((kernel.length - 1) / 2);
-              distanceToCenterY = kernelC - ((kernel.length - 1) / 2);
+  /**
+   * Applies a compiled filter kernel to each pixel in an RGB image with the engine its analysis
+   * chose. Filters each pixel based on the values of pixels around it's location in the same color
+   * channel. Kernels that are the outer product of a column and a row, such as the blur kernel,
+   * are applied as a horizontal pass followed by a vertical pass, which takes h + w instead of
+   * h * w multiplications per pixel.
+   *
+   * <p>Rows are read into buffers padded on both sides with the pixels the edge mode stands in
+   * for, so the loops over the kernel never have to check whether a pixel is inside the image.
+   *
+   * <p>The rows are split into bands that are filtered in parallel, each band priming its own
+   * ring of rows, so the result does not depend on how many threads are used.
+   *
+   * <p>When every weight is a binary fraction, as in the blur and sharpen kernels, the weights
+   * are scaled to integers and summed in int with a single rounding shift at the end. Such sums
+   * are exact in a double too, so the result is identical to the floating point one. Being exact,
+   * they can also be regrouped, so the pixels under mirrored weights of symmetric kernels are
+   * added before multiplying.
+   *
+   * <p>Large floating point kernels, for which the direct engines cost more than filtering tiles
+   * of the image through the fast Fourier transform, are applied that way instead. The result
+   * then matches up to rounding. Kernels of binary fractions always keep their exact fixed point
+   * engine.
+   *
+   * @param image      the RGB image to be transformed
+   * @param finalImage buffer of the same size to overwrite with the result
+   * @param kernel     the compiled filter kernel to use
+   * @param edgeMode   how pixels outside the image are treated
+   * @return the buffer holding the transformed image
+   */
+  static RgbBuffer applyKernel(RgbBuffer image, RgbBuffer finalImage, CompiledKernel kernel,
+                               EdgeMode edgeMode) {
+    if (image.getWidth() == 0 || image.getHeight() == 0) {
+      return finalImage;
+    }
+    switch (kernel.engineFor(image.getHeight())) {
+      case FFT:
+        return FftConvolution.apply(image, finalImage, kernel.weights, edgeMode, kernel.tileSize);
+      case FIXED_POINT_SEPARABLE:
+        return applyFixedPointSeparableKernel(image, finalImage, kernel, edgeMode);
+      case SEPARABLE:
+        return applySeparableKernel(image, finalImage, kernel.column, kernel.row, edgeMode);
+      case FIXED_POINT_DIRECT:
+        return applyFixedPointDirectKernel(image, finalImage, kernel, edgeMode);
+      default:
+        return applyDirectKernel(image, finalImage, kernel.weights, edgeMode);
+    }
+  }
+
+  /**
+   * Private method for dividing a fixed point sum by two to the power of the fraction bits,
+   * rounding half up like {@link Math#round(double)} does. The shift is arithmetic, so negative
+   * sums round the same way.
+   *
+   * @param sum  the fixed point sum
+   * @param bits the number of fraction bits of the sum
+   * @return the rounded integer value of the sum
+   */
+  private static int roundFixedPoint(int sum, int bits) {
+    return bits == 0 ? sum : (sum + (1 << (bits - 1))) >> bits;
+  }
+
+  /**
+   * Private method for applying a separable filter as a horizontal pass over each row followed by
+   * a vertical pass over the horizontal results, rounding once at the end. Channels are processed
+   * one at a time, keeping only the horizontal results of the rows under the kernel in a ring of
+   * row buffers.
+   *
+   * @param image      the RGB image to be transformed
+   * @param finalImage buffer of the same size to overwrite with the result
+   * @param column     the vertical factor of the kernel
+   * @param row        the horizontal factor of the kernel
+   * @param edgeMode   how pixels outside the image are treated
+   * @return the buffer holding the transformed image
+   */
+  private static RgbBuffer applySeparableKernel(RgbBuffer image, RgbBuffer finalImage,
+                                                double[] column, double[] row,
+                                                EdgeMode edgeMode) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    int size = column.length;
+    int rowsAbove = (size - 1) / 2;
+    int rowsBelow = size - 1 - rowsAbove;
+    int columnsLeft = (row.length - 1) / 2;
+    RowBands.forEach(height, (band, startRow, endRow) -> {
+      int[] sourceRow = new int[width];
+      int[] paddedRow = new int[width + row.length - 1];
+      double[][] horizontalRows = new double[size][width];
+      double[][] window = new double[size][];
+      double[] sums = new double[width];
+      int[] resultRow = new int[width];
+
+      for (int z = 0; z < 3; z++) {
+        // Prime the ring with the rows above and below the first center row of the band
+        for (int r = startRow - rowsAbove; r < startRow + rowsBelow; r++) {
+          readPaddedRow(image, z, r, edgeMode, columnsLeft, sourceRow, paddedRow);
+          filterRow(paddedRow, row, horizontalRows[Math.floorMod(r, size)]);
+        }
+
+        for (int r = startRow; r < endRow; r++) {
+          readPaddedRow(image, z, r + rowsBelow, edgeMode, columnsLeft, sourceRow, paddedRow);
+          filterRow(paddedRow, row, horizontalRows[Math.floorMod(r + rowsBelow, size)]);
+          for (int kernelR = 0; kernelR < size; kernelR++) {
+            window[kernelR] = horizontalRows[Math.floorMod(r + kernelR - rowsAbove, size)];
+          }
+
+          // Zero weights are skipped, adding a zero product would leave every sum unchanged
+          Arrays.fill(sums, 0);
+          for (int kernelR = 0; kernelR < size; kernelR++) {
+            double[] values = window[kernelR];
+            double weight = column[kernelR];
+            if (weight == 0) {
+              continue;
+            }
+            for (int c = 0; c < width; c++) {
+              sums[c] = sums[c] + values[c] * weight;
+            }
+          }
+          for (int c = 0; c < width; c++) {
+            resultRow[c] = (int) Math.round(sums[c]);
+          }
+          finalImage.writeChannelRow(z, r, resultRow);
+        }
+      }
+    });
+    return finalImage;
+  }
 
-              // Check for out of bounds, if so do not apply
-              if (r + distanceToCenterX >= rgbArray.length
-                      || c + distanceToCenterY >= rgbArray[r].length
-                      || r + distanceToCenterX < 0
-                      || c + distanceToCenterY < 0) {
+  /**
+   * Private method for applying a separable filter whose factors have been scaled to fixed point
+   * integers. Works like {@link #applySeparableKernel} but sums in int and rounds with a single
+   * shift, which gives exactly the same result since every sum of binary fractions of channel
+   * values is exact in a double as well. Rows under mirrored weights of a symmetric column are
+   * added together before multiplying.
+   *
+   * @param image      the RGB image to be transformed
+   * @param finalImage buffer of the same size to overwrite with the result
+   * @param kernel     the compiled kernel, with both factors in fixed point
+   * @param edgeMode   how pixels outside the image are treated
+   * @return the buffer holding the transformed image
+   */
+  private static RgbBuffer applyFixedPointSeparableKernel(RgbBuffer image, RgbBuffer finalImage,
+                                                          CompiledKernel kernel,
+                                                          EdgeMode edgeMode) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    int[] column = kernel.fixedColumn;
+    int[] row = kernel.fixedRow;
+    int size = column.length;
+    int rowsAbove = (size - 1) / 2;
+    int rowsBelow = size - 1 - rowsAbove;
+    int columnsLeft = (row.length - 1) / 2;
+    int foldedRows = kernel.symmetricColumns ? size / 2 : 0;
+    RowBands.forEach(height, (band, startRow, endRow) -> {
+      int[] sourceRow = new int[width];
+      int[] paddedRow = new int[width + row.length - 1];
+      int[][] horizontalRows = new int[size][width];
+      int[][] window = new int[size][];
+      int[] resultRow = new int[width];
+
+      for (int z = 0; z < 3; z++) {
+        // Prime the ring with the rows above and below the first center row of the band
+        for (int r = startRow - rowsAbove; r < startRow + rowsBelow; r++) {
+          readPaddedRow(image, z, r, edgeMode, columnsLeft, sourceRow, paddedRow);
+          filterRow(paddedRow, row, kernel.symmetricRows,
+                  horizontalRows[Math.floorMod(r, size)]);
+        }
+
+        for (int r = startRow; r < endRow; r++) {
+          readPaddedRow(image, z, r + rowsBelow, edgeMode, columnsLeft, sourceRow, paddedRow);
+          filterRow(paddedRow, row, kernel.symmetricRows,
+                  horizontalRows[Math.floorMod(r + rowsBelow, size)]);
+          for (int kernelR = 0; kernelR < size; kernelR++) {
+            window[kernelR] = horizontalRows[Math.floorMod(r + kernelR - rowsAbove, size)];
+          }
+
+          Arrays.fill(resultRow, 0);
+          for (int kernelR = 0; kernelR < foldedRows; kernelR++) {
+            int[] top = window[kernelR];
+            int[] bottom = window[size - 1 - kernelR];
+            int weight = column[kernelR];
+            if (weight == 0) {
+              continue;
+            }
+            for (int c = 0; c < width; c++) {
+              resultRow[c] = resultRow[c] + (top[c] + bottom[c]) * weight;
+            }
+          }
+          for (int kernelR = foldedRows; kernelR < size - foldedRows; kernelR++) {
+            int[] values = window[kernelR];
+            int weight = column[kernelR];
+            if (weight == 0) {
+              continue;
+            }
+            for (int c = 0; c < width; c++) {
+              resultRow[c] = resultRow[c] + values[c] * weight;
+            }
+          }
+          for (int c = 0; c < width; c++) {
+            resultRow[c] = roundFixedPoint(resultRow[c], kernel.bits);
+          }
+          finalImage.writeChannelRow(z, r, resultRow);
+        }
+      }
+    });
+    return finalImage;
+  }
+
+  /**
+   * Private method for applying the horizontal factor of a separable filter to one padded row.
+   *
+   * @param padded  the values of the row, padded by the weights left and right of the center
+   * @param weights the horizontal factor of the kernel
+   * @param result  array to write the filtered row into
+   */
+  private static void filterRow(int[] padded, double[] weights, double[] result) {
+    // Each sum still adds the weights in order, so the result is the same as summing per pixel
+    Arrays.fill(result, 0);
+    for (int k = 0; k < weights.length; k++) {
+      double weight = weights[k];
+      if (weight == 0) {
+        continue;
+      }
+      for (int c = 0; c < result.length; c++) {
+        result[c] = result[c] + padded[c + k] * weight;
+      }
+    }
+  }
+
+  /**
+   * Private method for applying the fixed point horizontal factor of a separable filter to one
+   * padded row.
+   *
+   * @param padded    the values of the row, padded by the weights left and right of the center
+   * @param weights   the horizontal factor of the kernel in fixed point
+   * @param symmetric whether the weights read the same backwards
+   * @param result    array to write the unrounded filtered row into
+   */
+  private static void filterRow(int[] padded, int[] weights, boolean symmetric, int[] result) {
+    Arrays.fill(result, 0);
+    addWeightedRow(padded, weights, symmetric, result);
+  }
+
+  /**
+   * Private method for adding one row of fixed point weights applied to a padded row to the sums
+   * of a row of pixels. Zero weights are skipped, and when the weights are symmetric the pixels
+   * under each mirrored pair are added before multiplying, which halves the multiplications.
+   *
+   * @param padded    the values of the row, padded by the weights left and right of the center
+   * @param weights   the weights in fixed point
+   * @param symmetric whether the weights read the same backwards
+   * @param sums      the sums to add to, one per pixel
+   */
+  private static void addWeightedRow(int[] padded, int[] weights, boolean symmetric,
+                                     int[] sums) {
+    int last = weights.length - 1;
+    int folded = symmetric ? weights.length / 2 : 0;
+    for (int k = 0; k < folded; k++) {
+      int weight = weights[k];
+      if (weight == 0) {
+        continue;
+      }
+      for (int c = 0; c < sums.length; c++) {
+        sums[c] = sums[c] + (padded[c + k] + padded[c + last - k]) * weight;
+      }
+    }
+    for (int k = folded; k < weights.length - folded; k++) {
+      int weight = weights[k];
+      if (weight == 0) {
+        continue;
+      }
+      for (int c = 0; c < sums.length; c++) {
+        sums[c] = sums[c] + padded[c + k] * weight;
+      }
+    }
+  }
+
+  /**
+   * Private method for applying a filter by multiplying every kernel entry with the pixel under
+   * it. Channels are processed one at a time, keeping only the padded rows under the kernel in a
+   * small ring of row buffers.
+   *
+   * @param image      the RGB image to be transformed
+   * @param finalImage buffer of the same size to overwrite with the result
+   * @param kernel     the filter kernel to use
+   * @param edgeMode   how pixels outside the image are treated
+   * @return the buffer holding the transformed image
+   */
+  private static RgbBuffer applyDirectKernel(RgbBuffer image, RgbBuffer finalImage,
+                                             double[][] kernel, EdgeMode edgeMode) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    int size = kernel.length;
+    int kernelWidth = kernel[0].length;
+
+    // Rows above and below the center row. Where the center is (kernel.length - 1) / 2
+    int rowsAbove = (size - 1) / 2;
+    int rowsBelow = size - 1 - rowsAbove;
+    int columnsLeft = (kernelWidth - 1) / 2;
+    RowBands.forEach(height, (band, startRow, endRow) -> {
+      int[] sourceRow = new int[width];
+      int[][] paddedRows = new int[size][width + kernelWidth - 1];
+      int[][] window = new int[size][];
+      double[] sums = new double[width];
+      int[] resultRow = new int[width];
+
+      for (int z = 0; z < 3; z++) {
+        // Prime the ring with the rows above and below the first center row of the band
+        for (int r = startRow - rowsAbove; r < startRow + rowsBelow; r++) {
+          readPaddedRow(image, z, r, edgeMode, columnsLeft, sourceRow,
+                  paddedRows[Math.floorMod(r, size)]);
+        }
+
+        for (int r = startRow; r < endRow; r++) {
+          readPaddedRow(image, z, r + rowsBelow, edgeMode, columnsLeft, sourceRow,
+                  paddedRows[Math.floorMod(r + rowsBelow, size)]);
+          for (int kernelR = 0; kernelR < size; kernelR++) {
+            window[kernelR] = paddedRows[Math.floorMod(r + kernelR - rowsAbove, size)];
+          }
+
+          // Add one kernel entry at a time across the whole row, in the same order as summing
+          // per pixel so the sums are unchanged. Zero entries would add nothing and are skipped
+          Arrays.fill(sums, 0);
+          for (int kernelR = 0; kernelR < size; kernelR++) {
+            int[] values = window[kernelR];
+            for (int kernelC = 0; kernelC < kernelWidth; kernelC++) {
+              double weight = kernel[kernelR][kernelC];
+              if (weight == 0) {
                 continue;
               }
-              filterResult = filterResult
-                      + (rgbArray[r + distanceToCenterX][c + distanceToCenterY][z]
-                      * kernel[kernelR][kernelC]);
+              for (int c = 0; c < width; c++) {
+                sums[c] = sums[c] + values[c + kernelC] * weight;
+              }
             }
           }
           // Collect sum as a double then round at the end for more accurate results.
-          finalArray[r][c][z] = (int) Math.round(filterResult);
+          for (int c = 0; c < width; c++) {
+            resultRow[c] = (int) Math.round(sums[c]);
+          }
+          finalImage.writeChannelRow(z, r, resultRow);
+        }
+      }
+    });
+    return finalImage;
+  }
+
+  /**
+   * Private method for applying a filter whose kernel has been scaled to fixed point integers.
+   * Works like {@link #applyDirectKernel} but sums in int and rounds with a single shift, giving
+   * exactly the same result. Rows under mirrored rows of a vertically symmetric kernel are added
+   * together before the weights are applied.
+   *
+   * @param image      the RGB image to be transformed
+   * @param finalImage buffer of the same size to overwrite with the result
+   * @param kernel     the compiled kernel, with its weights in fixed point
+   * @param edgeMode   how pixels outside the image are treated
+   * @return the buffer holding the transformed image
+   */
+  private static RgbBuffer applyFixedPointDirectKernel(RgbBuffer image, RgbBuffer finalImage,
+                                                       CompiledKernel kernel,
+                                                       EdgeMode edgeMode) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    int[][] weights = kernel.fixedWeights;
+    int size = kernel.height;
+    int paddedWidth = width + kernel.width - 1;
+    int rowsAbove = (size - 1) / 2;
+    int rowsBelow = size - 1 - rowsAbove;
+    int columnsLeft = (kernel.width - 1) / 2;
+    int foldedRows = kernel.symmetricColumns ? size / 2 : 0;
+    RowBands.forEach(height, (band, startRow, endRow) -> {
+      int[] sourceRow = new int[width];
+      int[][] paddedRows = new int[size][paddedWidth];
+      int[][] window = new int[size][];
+      int[] pairRow = new int[paddedWidth];
+      int[] resultRow = new int[width];
+
+      for (int z = 0; z < 3; z++) {
+        // Prime the ring with the rows above and below the first center row of the band
+        for (int r = startRow - rowsAbove; r < startRow + rowsBelow; r++) {
+          readPaddedRow(image, z, r, edgeMode, columnsLeft, sourceRow,
+                  paddedRows[Math.floorMod(r, size)]);
+        }
+
+        for (int r = startRow; r < endRow; r++) {
+          readPaddedRow(image, z, r + rowsBelow, edgeMode, columnsLeft, sourceRow,
+                  paddedRows[Math.floorMod(r + rowsBelow, size)]);
+          for (int kernelR = 0; kernelR < size; kernelR++) {
+            window[kernelR] = paddedRows[Math.floorMod(r + kernelR - rowsAbove, size)];
+          }
+
+          // Add one kernel row at a time across the whole row, which keeps the inner loops a
+          // plain multiply and add over arrays
+          Arrays.fill(resultRow, 0);
+          for (int kernelR = 0; kernelR < foldedRows; kernelR++) {
+            int[] top = window[kernelR];
+            int[] bottom = window[size - 1 - kernelR];
+            for (int c = 0; c < paddedWidth; c++) {
+              pairRow[c] = top[c] + bottom[c];
+            }
+            addWeightedRow(pairRow, weights[kernelR], kernel.symmetricRows, resultRow);
+          }
+          for (int kernelR = foldedRows; kernelR < size - foldedRows; kernelR++) {
+            addWeightedRow(window[kernelR], weights[kernelR], kernel.symmetricRows, resultRow);
+          }
+          for (int c = 0; c < width; c++) {
+            resultRow[c] = roundFixedPoint(resultRow[c], kernel.bits);
+          }
+          finalImage.writeChannelRow(z, r, resultRow);
         }
       }
+    });
+    return finalImage;
+  }
+
+  /**
+   * Reads one channel of a row into the middle of a padded row. The padding and rows outside the
+   * image are filled with the pixels the edge mode stands in for.
+   *
+   * @param image     the RGB image to read from
+   * @param channel   0 for red, 1 for green and 2 for blue
+   * @param row       the row to read, may lie outside the image
+   * @param edgeMode  how pixels outside the image are treated
+   * @param before    the number of padding pixels left of the row
+   * @param sourceRow array of at least width entries to read the row into
+   * @param padded    the padded row to fill
+   */
+  static void readPaddedRow(RgbBuffer image, int channel, int row, EdgeMode edgeMode,
+                            int before, int[] sourceRow, int[] padded) {
+    int width = image.getWidth();
+    int source = edgeMode.sourceIndex(row, image.getHeight());
+    if (source < 0) {
+      Arrays.fill(padded, 0);
+      return;
+    }
+    image.readChannelRow(channel, source, sourceRow);
+    System.arraycopy(sourceRow, 0, padded, before, width);
+    for (int i = 0; i < before; i++) {
+      padded[i] = paddingValue(sourceRow, i - before, edgeMode);
     }
-    return finalArray;
+    for (int i = before + width; i < padded.length; i++) {
+      padded[i] = paddingValue(sourceRow, i - before, edgeMode);
+    }
+  }
+
+  /**
+   * Private method for finding the value of a pixel left or right of a row.
+   *
+   * @param sourceRow the values of the row
+   * @param column    the column of the pixel, outside the row
+   * @param edgeMode  how pixels outside the image are treated
+   * @return the value the pixel stands for
+   */
+  private static int paddingValue(int[] sourceRow, int column, EdgeMode edgeMode) {
+    int source = edgeMode.sourceIndex(column, sourceRow.length);
+    return source < 0 ? 0 : sourceRow[source];
   }
 
   /*
-   * ################################ Color transformation methods ################################
+   * ############################### Sliding window blur methods ###############################
    */
 
   /**
-   * Applies a greyscale color transformation to an 3D RGB image array.
+   * Blurs an image by replacing every pixel with the average of the square of pixels around it,
+   * writing the result into a given buffer. The averages are kept up to date with running sums
+   * as the square slides along, so the time taken does not depend on the radius.
    *
-   * @param rgbArray the RGB image array to be transformed
-   * @return a 3D array of the transformed image
+   * @param image       the RGB image to be blurred
+   * @param destination buffer of the same size to overwrite, may be the image itself
+   * @param radius      the number of pixels the square reaches out from its center, 0 leaves
+   *                    the image unchanged
+   * @param edgeMode    how pixels outside the image are treated
+   * @return the destination buffer holding the blurred image
+   * @throws IllegalArgumentException if the radius is negative or more than 65536
    */
-  public static int[][][] applyGreyscale(int[][][] rgbArray) {
-    return applyColorTransformation(rgbArray, greyscaleMatrix);
+  public static RgbBuffer applyBoxBlur(RgbBuffer image, RgbBuffer destination, int radius,
+                                       EdgeMode edgeMode) throws IllegalArgumentException {
+    checkBlurRadius(radius);
+    return applyBoxBlurPass(image, destination, radius, edgeMode);
   }
 
   /**
-   * Applies a sepia color transformation to an 3D RGB image array.
+   * Blurs an image with a gaussian blur, writing the result into a given buffer. The gaussian is
+   * approximated by three box blurs whose sizes are chosen to give the same spread, so like the
+   * box blur the time taken does not depend on sigma.
    *
-   * @param rgbArray the RGB image array to be transformed
-   * @return a 3D array of the transformed image
+   * @param image       the RGB image to be blurred
+   * @param destination buffer of the same size to overwrite, may be the image itself
+   * @param sigma       the standard deviation of the gaussian in pixels, 0 leaves the image
+   *                    unchanged
+   * @param edgeMode    how pixels outside the image are treated
+   * @return the destination buffer holding the blurred image
+   * @throws IllegalArgumentException if sigma is negative, not a number or too large
    */
-  public static int[][][] applySepia(int[][][] rgbArray) {
-    return applyColorTransformation(rgbArray, sepiaMatrix);
+  public static RgbBuffer applyGaussianBlur(RgbBuffer image, RgbBuffer destination, double sigma,
+                                            EdgeMode edgeMode) throws IllegalArgumentException {
+    if (!(sigma >= 0) || Double.isInfinite(sigma)) {
+      throw new IllegalArgumentException("Blur sigma must be a number of at least 0.");
+    }
+    int[] radii = gaussianBoxRadii(sigma, GAUSSIAN_BOX_PASSES);
+    for (int radius : radii) {
+      checkBlurRadius(radius);
+    }
+
+    // The first pass reads the image, the others blur the destination in place
+    RgbBuffer source = image;
+    for (int radius : radii) {
+      applyBoxBlurPass(source, destination, radius, edgeMode);
+      source = destination;
+    }
+    return destination;
   }
 
   /**
-   * Private method to apply a color transformation matrix to an image array. Transforms each pixel
-   * based on RGB values at the same coordinate.
+   * Private method for checking a blur radius.
    *
-   * @param rgbArray             the RGB image array to be transformed
-   * @param transformationMatrix the 3x3 color transformation matrix to apply to each pixel
-   * @return a 3D array of the transformed image
+   * @param radius the radius to check
+   * @throws IllegalArgumentException if the radius is negative or more than MAX_BLUR_RADIUS
    */
-  private static int[][][] applyColorTransformation(int[][][] rgbArray,
-                                                    double[][] transformationMatrix) {
-
-    int[][][] finalArray = deepCopy3dArray(rgbArray);
-    int[] pixelRgbValues = new int[3];
-    int[] transformedPixelRgbValues = new int[3];
+  private static void checkBlurRadius(int radius) throws IllegalArgumentException {
+    if (radius < 0) {
+      throw new IllegalArgumentException("Blur radius can't be negative.");
+    }
+    if (radius > MAX_BLUR_RADIUS) {
+      throw new IllegalArgumentException("Blur radius can't be more than " + MAX_BLUR_RADIUS
+              + ".");
+    }
+  }
 
-    for (int r = 0; r < rgbArray.length; r++) {
-      for (int c = 0; c < rgbArray[r].length; c++) {
+  /**
+   * Private method for finding the radii of the box blurs that together approximate a gaussian.
+   * The boxes have one of two odd widths either side of the ideal width, with as many of the
+   * smaller ones as gets the variance of the passes closest to sigma squared.
+   *
+   * @param sigma  the standard deviation of the gaussian in pixels
+   * @param passes the number of box blurs
+   * @return the radius of each box blur
+   */
+  private static int[] gaussianBoxRadii(double sigma, int passes) {
+    double variance = 12 * sigma * sigma;
+    double idealWidth = Math.sqrt(variance / passes + 1);
+    double lower = Math.floor(idealWidth);
+    if (lower % 2 == 0) {
+      lower--;
+    }
+    double upper = lower + 2;
+    long lowerPasses = Math.round((variance - passes * lower * lower - 4 * passes * lower
+            - 3 * passes) / (-4 * lower - 4));
+
+    int[] radii = new int[passes];
+    for (int i = 0; i < passes; i++) {
+      double width = i < lowerPasses ? lower : upper;
+      radii[i] = (int) Math.min((width - 1) / 2, Integer.MAX_VALUE);
+    }
+    return radii;
+  }
 
-        // Reset values
-        Arrays.fill(pixelRgbValues, 0);
-        Arrays.fill(transformedPixelRgbValues, 0);
+  /**
+   * Private method for applying one box blur. Every channel is first summed along the rows into
+   * a plane, then the plane is summed down the columns, each time by adding the pixel entering
+   * the window and subtracting the one leaving it. Rows are summed in parallel bands and columns
+   * in parallel stripes, so every stripe primes its sums only once. All values are read into the
+   * planes before the channel is written, so the destination may be the image itself.
+   *
+   * @param image       the RGB image to be blurred
+   * @param destination buffer of the same size to overwrite, may be the image itself
+   * @param radius      the number of pixels the square reaches out from its center
+   * @param edgeMode    how pixels outside the image are treated
+   * @return the destination buffer holding the blurred image
+   */
+  private static RgbBuffer applyBoxBlurPass(RgbBuffer image, RgbBuffer destination, int radius,
+                                            EdgeMode edgeMode) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    if (width == 0 || height == 0) {
+      return destination;
+    }
+    int size = 2 * radius + 1;
+    long area = (long) size * size;
+    int[] rowSums = new int[width * height];
+    int[] averages = new int[width * height];
+
+    for (int z = 0; z < 3; z++) {
+      int channel = z;
+      RowBands.forEach(height, (band, startRow, endRow) -> {
+        int[] sourceRow = new int[width];
+        int[] paddedRow = new int[width + size - 1];
+        for (int r = startRow; r < endRow; r++) {
+          readPaddedRow(image, channel, r, edgeMode, radius, sourceRow, paddedRow);
+          int sum = 0;
+          for (int i = 0; i < size - 1; i++) {
+            sum = sum + paddedRow[i];
+          }
+          int index = r * width;
+          for (int c = 0; c < width; c++) {
+            sum = sum + paddedRow[c + size - 1];
+            rowSums[index + c] = sum;
+            sum = sum - paddedRow[c];
+          }
+        }
+      });
 
-        // Get matrix of rgb values at each r and c position
-        for (int z = 0; z < pixelRgbValues.length; z++) {
-          pixelRgbValues[z] = rgbArray[r][c][z];
+      RowBands.forEach(width, (band, startColumn, endColumn) -> {
+        long[] columnSums = new long[endColumn - startColumn];
+        for (int r = -radius; r < radius; r++) {
+          addRowSums(rowSums, edgeMode.sourceIndex(r, height), width, startColumn, columnSums, 1);
+        }
+        for (int r = 0; r < height; r++) {
+          addRowSums(rowSums, edgeMode.sourceIndex(r + radius, height), width, startColumn,
+                  columnSums, 1);
+          int index = r * width + startColumn;
+          for (int c = 0; c < columnSums.length; c++) {
+            // Rounds half up, the sums are never negative
+            averages[index + c] = (int) ((2 * columnSums[c] + area) / (2 * area));
+          }
+          addRowSums(rowSums, edgeMode.sourceIndex(r - radius, height), width, startColumn,
+                  columnSums, -1);
         }
-        // Generate new rgb matrix at each r and c position
-        transformedPixelRgbValues = dotProductRounded(transformationMatrix, pixelRgbValues);
+      });
 
-        // Assign values from new rgb matrix to rgb picture array in each r and c position
-        for (int z = 0; z < transformedPixelRgbValues.length; z++) {
-          finalArray[r][c][z] = transformedPixelRgbValues[z];
+      RowBands.forEach(height, (band, startRow, endRow) -> {
+        int[] resultRow = new int[width];
+        for (int r = startRow; r < endRow; r++) {
+          System.arraycopy(averages, r * width, resultRow, 0, width);
+          destination.writeChannelRow(channel, r, resultRow);
         }
-      }
+      });
     }
-    return finalArray;
+    return destination;
   }
 
   /**
-   * Private method for calculating dot product between 2 matrixes. Does not check if given array is
-   * a matrix nor whether row length of matrix 1 is equal column length of matrix 2. Returned matrix
-   * is rounded and cast to int.
+   * Private method for adding part of a row of the row sums plane to the running column sums, or
+   * subtracting it.
    *
-   * @param transformationMatrix the first matrix of the dot product
-   * @param rgbValues            the second matrix of the dot product
-   * @return result matrix of the dot product
+   * @param rowSums     the plane of row sums
+   * @param row         the row to add, or -1 for a row outside the image that counts as black
+   * @param width       the width of the plane
+   * @param startColumn the column of the first running sum
+   * @param columnSums  the running sums of a stripe of columns
+   * @param sign        1 to add the row, -1 to subtract it
    */
-  private static int[] dotProductRounded(double[][] transformationMatrix, int[] rgbValues) {
-    int[] returnArray = new int[transformationMatrix.length];
-    double sum;
-
-    for (int r = 0; r < transformationMatrix.length; r++) {
-      sum = 0;
-      for (int c = 0; c < transformationMatrix[r].length; c++) {
-        sum = sum + transformationMatrix[r][c] * rgbValues[c];
-      }
-      returnArray[r] = (int) Math.round(sum);
+  private static void addRowSums(int[] rowSums, int row, int width, int startColumn,
+                                 long[] columnSums, int sign) {
+    if (row < 0) {
+      return;
+    }
+    int index = row * width + startColumn;
+    for (int c = 0; c < columnSums.length; c++) {
+      columnSums[c] = columnSums[c] + sign * rowSums[index + c];
     }
-    return returnArray;
   }
 
   /*
-   * ################################ Dithering methods ################################
+   * ################################ Color transformation methods ################################
    */
 
   /**
-   * Creates a greyscasle dither of the image.
+   * Applies a greyscale color transformation to an RGB image.
    *
-   * @param rgbArray the RGB image array to be dithered
-   * @return a 3D array of a dithered image
+   * @param image the RGB image to be transformed
+   * @return a new buffer of the transformed image
    */
-  public static int[][][] applyFloydSteinbergDither(int[][][] rgbArray) {
+  public static RgbBuffer applyGreyscale(RgbBuffer image) {
+    return applyGreyscale(image, image.createBlank(image.getWidth(), image.getHeight()));
+  }
 
-    int[][][] finalArray = deepCopy3dArray(rgbArray);
-    finalArray = applyGreyscale(finalArray);
+  /**
+   * Applies a greyscale color transformation to an RGB image, writing the result into a given
+   * buffer.
+   *
+   * @param image       the RGB image to be transformed
+   * @param destination buffer of the same size to overwrite, may be the image itself
+   * @return the destination buffer holding the transformed image
+   */
+  public static RgbBuffer applyGreyscale(RgbBuffer image, RgbBuffer destination) {
+    return applyColorTransformation(image, destination, greyscaleMatrix);
+  }
 
-    for (int r = 0; r < finalArray.length; r++) {
-      for (int c = 0; c < finalArray[r].length; c++) {
+  /**
+   * Applies a sepia color transformation to an RGB image.
+   *
+   * @param image the RGB image to be transformed
+   * @return a new buffer of the transformed image
+   */
+  public static RgbBuffer applySepia(RgbBuffer image) {
+    return applySepia(image, image.createBlank(image.getWidth(), image.getHeight()));
+  }
 
-        int oldColor = finalArray[r][c][0];
-        int newColor = Math.abs(oldColor - 255) < Math.abs(oldColor) ? 255 : 0;
-        int error = oldColor - newColor;
+  /**
+   * Applies a sepia color transformation to an RGB image, writing the result into a given buffer.
+   *
+   * @param image       the RGB image to be transformed
+   * @param destination buffer of the same size to overwrite, may be the image itself
+   * @return the destination buffer holding the transformed image
+   */
+  public static RgbBuffer applySepia(RgbBuffer image, RgbBuffer destination) {
+    return applyColorTransformation(image, destination, sepiaMatrix);
+  }
 
-        for (int z = 0; z < finalArray[r][c].length; z++) {
-          finalArray[r][c][z] = newColor;
+  /**
+   * Applies a given color transformation matrix to an RGB image, writing the result into a given
+   * buffer. Each row of the matrix gives one output channel as a weighted sum of the red, green and
+   * blue values of the pixel. The matrix is analysed once and cached, so applying the same weights
+   * again skips the analysis.
+   *
+   * @param image       the RGB image to be transformed
+   * @param destination buffer of the same size to overwrite, may be the image itself
+   * @param matrix      the 3x3 color transformation matrix
+   * @return the destination buffer holding the transformed image
+   * @throws IllegalArgumentException if the matrix is not 3x3 or a weight is not a finite number
+   */
+  public static RgbBuffer applyColorMatrix(RgbBuffer image, RgbBuffer destination,
+                                           double[][] matrix) throws IllegalArgumentException {
+    return applyColorTransformation(image, destination, CompiledColorMatrix.compile(matrix));
+  }
 
-          // If not on right edge, add error to col to right
-          if (!(c == finalArray[r].length - 1)) {
-            finalArray[r][c + 1][z] = finalArray[r][c + 1][z] + (7 * error / 16);
-          }
-          // If not on bottom edge, add error to row below
-          if (!(r == finalArray.length - 1)) {
-            finalArray[r + 1][c][z] = finalArray[r + 1][c][z] + (5 * error / 16);
-          }
-          // If not on left edge or bottom edge, add error to next-row-left
-          if (!(r == finalArray.length - 1 || c == 0)) {
-            finalArray[r + 1][c - 1][z] = finalArray[r + 1][c - 1][z] + (3 * error / 16);
-          }
-          // If not on right edge or bottom edge, add error to next-row-right
-          if (!(r == finalArray.length - 1 || c == finalArray[r].length - 1)) {
-            finalArray[r + 1][c + 1][z] = finalArray[r + 1][c + 1][z] + (1 * error / 16);
-          }
+  /**
+   * Applies a compiled color transformation matrix to an image. Transforms each pixel based on RGB
+   * values at the same coordinate, in fixed point when the analysis of the matrix allows it.
+   *
+   * @param image      the RGB image to be transformed
+   * @param finalImage buffer of the same size to overwrite, may be the image itself
+   * @param matrix     the compiled 3x3 color transformation matrix to apply to each pixel
+   * @return the buffer holding the transformed image
+   */
+  static RgbBuffer applyColorTransformation(RgbBuffer image, RgbBuffer finalImage,
+                                            CompiledColorMatrix matrix) {
+
+    int width = image.getWidth();
+    RowBands.forEach(image.getHeight(), (band, startRow, endRow) -> {
+      // One row of each channel, all read before any is written so the image can be its own
+      // destination
+      int[][] channelRows = new int[3][width];
+      int[] resultRow = new int[width];
 
+      for (int r = startRow; r < endRow; r++) {
+        for (int z = 0; z < 3; z++) {
+          image.readChannelRow(z, r, channelRows[z]);
+        }
+        for (int z = 0; z < 3; z++) {
+          // A row of the matrix the same as the one before, as in greyscale, gives the same values
+          if (z == 0 || !Arrays.equals(matrix.weights[z], matrix.weights[z - 1])) {
+            dotProduct(matrix, z, channelRows, resultRow);
+          }
+          finalImage.writeChannelRow(z, r, resultRow);
         }
       }
+    });
+    return finalImage;
+  }
+
+  /**
+   * Private method for calculating one output channel of a compiled transformation matrix for
+   * every pixel of a row, in fixed point or through the lookup tables when the matrix allows it.
+   * Every way gives the same result.
+   *
+   * @param matrix      the compiled transformation matrix
+   * @param channel     the output channel, 0 for red, 1 for green and 2 for blue
+   * @param channelRows the red, green and blue values of the row of pixels
+   * @param result      array to write the rounded dot product of each pixel into
+   */
+  private static void dotProduct(CompiledColorMatrix matrix, int channel, int[][] channelRows,
+                                 int[] result) {
+    if (matrix.fixedWeights != null) {
+      dotProductFixedPoint(matrix.fixedWeights[channel], matrix.bits, channelRows, result);
+    } else if (matrix.lookupTables != null) {
+      dotProductLookup(matrix.lookupTables[channel], matrix.lookupBits, matrix.weights[channel],
+              channelRows, result);
+    } else {
+      dotProductRounded(matrix.weights[channel], channelRows, result);
     }
+  }
 
-    return finalArray;
+  /**
+   * Private method for calculating the dot product of one row of a transformation matrix with
+   * every pixel of a row. The products are added in the same order for every pixel, one whole row
+   * at a time, and the sums are rounded and cast to int.
+   *
+   * @param matrixRow   the row of the transformation matrix giving one output channel
+   * @param channelRows the red, green and blue values of the row of pixels
+   * @param result      array to write the rounded dot product of each pixel into
+   */
+  private static void dotProductRounded(double[] matrixRow, int[][] channelRows, int[] result) {
+    int[] red = channelRows[0];
+    int[] green = channelRows[1];
+    int[] blue = channelRows[2];
+    double redWeight = matrixRow[0];
+    double greenWeight = matrixRow[1];
+    double blueWeight = matrixRow[2];
+    for (int c = 0; c < result.length; c++) {
+      double sum = red[c] * redWeight + green[c] * greenWeight + blue[c] * blueWeight;
+      result[c] = (int) Math.round(sum);
+    }
+  }
 
+  /**
+   * Private method for calculating the dot product of one row of a fixed point transformation
+   * matrix with every pixel of a row, rounding with a single shift. The sums are exact, so this
+   * gives the same result as {@link #dotProductRounded}.
+   *
+   * @param matrixRow   the row of the transformation matrix in fixed point
+   * @param bits        the fraction bits of the matrix
+   * @param channelRows the red, green and blue values of the row of pixels
+   * @param result      array to write the rounded dot product of each pixel into
+   */
+  private static void dotProductFixedPoint(int[] matrixRow, int bits, int[][] channelRows,
+                                           int[] result) {
+    int[] red = channelRows[0];
+    int[] green = channelRows[1];
+    int[] blue = channelRows[2];
+    int redWeight = matrixRow[0];
+    int greenWeight = matrixRow[1];
+    int blueWeight = matrixRow[2];
+    for (int c = 0; c < result.length; c++) {
+      int sum = red[c] * redWeight + green[c] * greenWeight + blue[c] * blueWeight;
+      result[c] = roundFixedPoint(sum, bits);
+    }
   }
+
+  /**
+   * Private method for calculating the dot product of one row of a transformation matrix with
+   * every pixel of a row through its lookup tables. A sum too close to a half to be sure it rounds
+   * like {@link #dotProductRounded} is worked out the same way as there instead.
+   *
+   * @param tables      the red, green and blue tables of the row, half a unit added to the red
+   * @param bits        the fraction bits of the tables
+   * @param matrixRow   the row of the transformation matrix, for sums close to a half
+   * @param channelRows the red, green and blue values of the row of pixels
+   * @param result      array to write the rounded dot product of each pixel into
+   */
+  private static void dotProductLookup(int[][] tables, int bits, double[] matrixRow,
+                                       int[][] channelRows, int[] result) {
+    int[] red = channelRows[0];
+    int[] green = channelRows[1];
+    int[] blue = channelRows[2];
+    int[] redTable = tables[0];
+    int[] greenTable = tables[1];
+    int[] blueTable = tables[2];
+    int mask = (1 << bits) - 1;
+    int margin = CompiledColorMatrix.LOOKUP_MARGIN;
+    for (int c = 0; c < result.length; c++) {
+      int sum = redTable[red[c]] + greenTable[green[c]] + blueTable[blue[c]];
+      if (((sum + margin) & mask) < 2 * margin) {
+        result[c] = (int) Math.round(red[c] * matrixRow[0] + green[c] * matrixRow[1]
+                + blue[c] * matrixRow[2]);
+      } else {
+        result[c] = sum >> bits;
+      }
+    }
+  }
+
+  /*
+   * ################################ Dithering methods ################################
+   */
+
+  /**
+   * Creates a greyscasle dither of the image. The error is diffused on the luminance of each
+   * pixel, kept in integers since intermediate values can fall outside of 0 to 255.
+   *
+   * @param image the RGB image to be dithered
+   * @return a new buffer of a dithered image
+   */
+  public static RgbBuffer applyFloydSteinbergDither(RgbBuffer image) {
+    return applyFloydSteinbergDither(image,
+            image.createBlank(image.getWidth(), image.getHeight()));
+  }
+
+  /**
+   * Creates a greyscasle dither of the image, writing the result into a given buffer. Rows are
+   * dithered in parallel as a staggered wavefront, with the same result for any number of
+   * threads.
+   *
+   * @param image      the RGB image to be dithered
+   * @param finalImage buffer of the same size to overwrite, may be the image itself
+   * @return the buffer holding the dithered image
+   */
+  public static RgbBuffer applyFloydSteinbergDither(RgbBuffer image, RgbBuffer finalImage) {
+    return FloydSteinbergDither.apply(image, finalImage, getParallelism());
+  }
+
   /*
    * ################################ Mosaic methods ################################
    */
@@ -267,29 +1059,40 @@ public final class ArrayFilter {
   /**
    * Creates a mosaic effect of the image.
    *
-   * @param rgbArray the RGB image array to be dithered
-   * @param seeds    the number of starting seeds
-   * @return a 3D array of a dithered image
+   * @param image the RGB image to be dithered
+   * @param seeds the number of starting seeds
+   * @return a new buffer of a dithered image
    */
-  public static int[][][] applyMosaic(int[][][] rgbArray, int seeds) {
+  public static RgbBuffer applyMosaic(RgbBuffer image, int seeds) {
+    return applyMosaic(image, seeds, image.createBlank(image.getWidth(), image.getHeight()));
+  }
+
+  /**
+   * Creates a mosaic effect of the image, writing the result into a given buffer.
+   *
+   * @param image      the RGB image to be dithered
+   * @param seeds      the number of starting seeds
+   * @param finalImage buffer of the same size to overwrite, must not be the image itself
+   * @return the buffer holding the mosaic image
+   */
+  public static RgbBuffer applyMosaic(RgbBuffer image, int seeds, RgbBuffer finalImage) {
 
     // Array of seeds. Each seed is an array of r and c points
     int[][] seedPixels = new int[seeds][2];
     Random random = new Random();
     for (int i = 0; i < seeds; i++) {
-      seedPixels[i][0] = random.nextInt(rgbArray.length);
-      seedPixels[i][1] = random.nextInt(rgbArray[0].length);
+      seedPixels[i][0] = random.nextInt(image.getHeight());
+      seedPixels[i][1] = random.nextInt(image.getWidth());
     }
 
-    int[][][] finalArray = deepCopy3dArray(rgbArray);
     // For each seed in the array of seeds, map a new list to that seed.
     Map<int[], List<int[]>> seedMap = new HashMap<>();
     for (int seedIndex = 0; seedIndex < seedPixels.length; seedIndex++) {
       seedMap.put(seedPixels[seedIndex], new ArrayList<>());
     }
     // For each pixel in image, check against all seeds in seed map, add closest
-    for (int r = 0; r < rgbArray.length; r++) {
-      for (int c = 0; c < rgbArray[r].length; c++) {
+    for (int r = 0; r < image.getHeight(); r++) {
+      for (int c = 0; c < image.getWidth(); c++) {
         // The distance to the closest seed
         double minDistance = Double.MAX_VALUE;
         // The closest seed to the pixel
@@ -312,29 +1115,23 @@ public final class ArrayFilter {
     // Calculate the average RGB value for each seed
     seedMap.forEach((seed, pixelList) -> {
       int redSum = 0;
-      int blueSum = 0;
       int greenSum = 0;
+      int blueSum = 0;
       for (int i = 0; i < pixelList.size(); i++) {
-        int rowPixel = pixelList.get(i)[0];
-        int colPixel = pixelList.get(i)[1];
-        redSum += rgbArray[rowPixel][colPixel][0];
-        blueSum += rgbArray[rowPixel][colPixel][1];
-        greenSum += rgbArray[rowPixel][colPixel][2];
+        int rgb = image.getRgb(pixelList.get(i)[0], pixelList.get(i)[1]);
+        redSum += PackedRgbBuffer.red(rgb);
+        greenSum += PackedRgbBuffer.green(rgb);
+        blueSum += PackedRgbBuffer.blue(rgb);
       }
       int averageRed = pixelList.size() == 0 ? redSum : redSum / pixelList.size();
-      int averageBlue = pixelList.size() == 0 ? blueSum : blueSum / pixelList.size();
       int averageGreen = pixelList.size() == 0 ? greenSum : greenSum / pixelList.size();
+      int averageBlue = pixelList.size() == 0 ? blueSum : blueSum / pixelList.size();
 
       // Assign the average RGB value to each pixel associated with the seed
-      pixelList.forEach(pixelArray -> {
-        int rowPixel = pixelArray[0];
-        int colPixel = pixelArray[1];
-        finalArray[rowPixel][colPixel][0] = averageRed;
-        finalArray[rowPixel][colPixel][1] = averageBlue;
-        finalArray[rowPixel][colPixel][2] = averageGreen;
-      });
+      pixelList.forEach(pixelArray -> finalImage.setRgb(pixelArray[0], pixelArray[1],
+              averageRed, averageGreen, averageBlue));
     });
-    return finalArray;
+    return finalImage;
   }
 
   private static double calculateEculideanDistace(int x1, int y1, int x2, int y2) {
@@ -348,64 +1145,184 @@ public final class ArrayFilter {
   /**
    * Produces a grayscale image where edges (areas of high contrast) are highlighted.
    *
-   * @param rgbArray the RGB image array to be highlighted
-   * @return a 3D array of a highlighted image
+   * @param image the RGB image to be highlighted
+   * @return a new buffer of a highlighted image
    */
-  public static int[][][] applySobelEdgeDetection(int[][][] rgbArray) {
-    int[][][] finalArray = deepCopy3dArray(rgbArray);
+  public static RgbBuffer applySobelEdgeDetection(RgbBuffer image) {
+    return applySobelEdgeDetection(image,
+            image.createBlank(image.getWidth(), image.getHeight()));
+  }
 
-    int maximum = Integer.MIN_VALUE;
-    int minimum = Integer.MAX_VALUE;
+  /**
+   * Produces a grayscale image where edges (areas of high contrast) are highlighted, writing the
+   * result into a given buffer.
+   *
+   * @param image      the RGB image to be highlighted
+   * @param finalImage buffer of the same size to overwrite, must not be the image itself
+   * @return the buffer holding the highlighted image
+   */
+  public static RgbBuffer applySobelEdgeDetection(RgbBuffer image, RgbBuffer finalImage) {
+    return applySobelEdgeDetection(image, finalImage, EdgeMode.ZERO);
+  }
 
-    for (int r = 0; r < rgbArray.length; r++) {
-      for (int c = 0; c < rgbArray[r].length; c++) {
-        for (int z = 0; z < rgbArray[r][c].length; z++) {
-          int distanceToCenterX;
-          int distanceToCenterY;
-          double gx = 0;
-          double gy = 0;
-
-          for (int kernelR = 0; kernelR < sobelEdgeX.length; kernelR++) {
-            for (int kernelC = 0; kernelC < sobelEdgeX.length; kernelC++) {
-              // Relative distance to center of kernel. Where the center is (kernel.length - 1) / 2
-              // Assumes both sorbel kernels are same length
-              distanceToCenterX = kernelR - ((sobelEdgeX.length - 1) / 2);
-              distanceToCenterY = kernelC - ((sobelEdgeX.length - 1) / 2);
-
-              // Check for out of bounds, if so do not apply
-              if (r + distanceToCenterX >= rgbArray.length
-                      || c + distanceToCenterY >= rgbArray[r].length
-                      || r + distanceToCenterX < 0
-                      || c + distanceToCenterY < 0) {
-                continue;
-              }
-              gx = gx + (rgbArray[r + distanceToCenterX][c + distanceToCenterY][z]
-                      * sobelEdgeX[kernelR][kernelC]);
-              gy = gy + (rgbArray[r + distanceToCenterX][c + distanceToCenterY][z]
-                      * sobelEdgeY[kernelR][kernelC]);
-            }
+  /**
+   * Produces a grayscale image where edges (areas of high contrast) are highlighted, writing the
+   * result into a given buffer and treating pixels beyond the edges of the image as the edge mode
+   * says.
+   *
+   * @param image      the RGB image to be highlighted
+   * @param finalImage buffer of the same size to overwrite, must not be the image itself
+   * @param edgeMode   how pixels outside the image are treated
+   * @return the buffer holding the highlighted image
+   */
+  public static RgbBuffer applySobelEdgeDetection(RgbBuffer image, RgbBuffer finalImage,
+                                                  EdgeMode edgeMode) {
+    return applySobelEdgeDetection(image, finalImage, edgeMode, false);
+  }
+
+  /**
+   * Produces a grayscale image where edges (areas of high contrast) are highlighted, writing the
+   * result into a given buffer. The Sobel gradients are taken of the luminance of the image, as
+   * its greyscale gives it, and the gradient magnitudes are stretched to fill 0 to 255. The fast
+   * magnitude adds the absolute gradients instead of taking the length of the gradient, which
+   * avoids a square root per pixel but makes diagonal edges stand out more.
+   *
+   * @param image         the RGB image to be highlighted
+   * @param finalImage    buffer of the same size to overwrite, must not be the image itself
+   * @param edgeMode      how pixels outside the image are treated
+   * @param fastMagnitude whether to use |gx| + |gy| as the magnitude of the gradient
+   * @return the buffer holding the highlighted image
+   */
+  public static RgbBuffer applySobelEdgeDetection(RgbBuffer image, RgbBuffer finalImage,
+                                                  EdgeMode edgeMode, boolean fastMagnitude) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    if (width == 0 || height == 0) {
+      return finalImage;
+    }
+
+    // Gradient magnitudes are not limited to 0 to 255 so they are kept in their own plane
+    int[] magnitudes = new int[width * height];
+
+    // Each band finds the extremes of its own rows, which are then combined
+    int bands = RowBands.bandCount(height);
+    int[] bandMaximum = new int[bands];
+    int[] bandMinimum = new int[bands];
+
+    RowBands.forEach(height, bands, (band, startRow, endRow) -> {
+      int maximum = Integer.MIN_VALUE;
+      int minimum = Integer.MAX_VALUE;
+      int[][] channelRows = new int[3][width];
+      int[] luminanceRow = new int[width];
+      int[][] paddedRows = new int[3][width + 2];
+      int[] smoothed = new int[width + 2];
+      int[] difference = new int[width + 2];
+
+      // Prime the ring with the luminance of the row above the first row of the band
+      readLuminanceRow(image, startRow - 1, edgeMode, channelRows, luminanceRow,
+              paddedRows[Math.floorMod(startRow - 1, 3)]);
+      readLuminanceRow(image, startRow, edgeMode, channelRows, luminanceRow,
+              paddedRows[Math.floorMod(startRow, 3)]);
+
+      for (int r = startRow; r < endRow; r++) {
+        readLuminanceRow(image, r + 1, edgeMode, channelRows, luminanceRow,
+                paddedRows[Math.floorMod(r + 1, 3)]);
+        int[] above = paddedRows[Math.floorMod(r - 1, 3)];
+        int[] middle = paddedRows[Math.floorMod(r, 3)];
+        int[] below = paddedRows[Math.floorMod(r + 1, 3)];
+
+        // Both kernels are a 1 2 1 smoothing in one direction times a difference in the other,
+        // so each column is smoothed and differenced vertically once and shared by three pixels
+        for (int c = 0; c < width + 2; c++) {
+          smoothed[c] = above[c] + 2 * middle[c] + below[c];
+          difference[c] = above[c] - below[c];
+        }
+
+        int offset = r * width;
+        for (int c = 0; c < width; c++) {
+          int gx = smoothed[c] - smoothed[c + 2];
+          int gy = difference[c] + 2 * difference[c + 1] + difference[c + 2];
+          int magnitude;
+          if (fastMagnitude) {
+            magnitude = Math.abs(gx) + Math.abs(gy);
+          } else {
+            magnitude = (int) Math.round(Math.sqrt((double) (gx * gx + gy * gy)));
           }
-          int finalResult = (int) Math.round(Math.sqrt(gx * gx + gy * gy));
-          finalArray[r][c][z] = finalResult;
-          maximum = Math.max(maximum, finalResult);
-          minimum = Math.min(minimum, finalResult);
+          magnitudes[offset + c] = magnitude;
+          maximum = Math.max(maximum, magnitude);
+          minimum = Math.min(minimum, magnitude);
         }
       }
+      bandMaximum[band] = maximum;
+      bandMinimum[band] = minimum;
+    });
+
+    int maximum = Integer.MIN_VALUE;
+    int minimum = Integer.MAX_VALUE;
+    for (int band = 0; band < bands; band++) {
+      maximum = Math.max(maximum, bandMaximum[band]);
+      minimum = Math.min(minimum, bandMinimum[band]);
     }
 
-    System.out.println("max = " + maximum);
-    System.out.println("min = " + minimum);
-    for (int r = 0; r < finalArray.length; r++) {
-      for (int c = 0; c < finalArray[r].length; c++) {
-        for (int z = 0; z < rgbArray[r][c].length; z++) {
-          int rescaleValue;
-          rescaleValue = (finalArray[r][c][z] - minimum) * 255
-                  / (maximum - minimum);
-          finalArray[r][c][z] = rescaleValue;
+    // Every magnitude is rescaled through a table of grey pixels, all black if they are all equal
+    int[] rescaled = new int[maximum + 1];
+    for (int magnitude = minimum; magnitude <= maximum; magnitude++) {
+      int value = maximum == minimum ? 0 : (magnitude - minimum) * 255 / (maximum - minimum);
+      rescaled[magnitude] = value << 16 | value << 8 | value;
+    }
+    RowBands.forEach(height, (band, startRow, endRow) -> {
+      int[] resultRow = new int[width];
+      for (int r = startRow; r < endRow; r++) {
+        int offset = r * width;
+        for (int c = 0; c < width; c++) {
+          resultRow[c] = rescaled[magnitudes[offset + c]];
         }
+        finalImage.writeRgbRow(r, resultRow);
       }
+    });
+    return finalImage;
+  }
+
+  /**
+   * Private method for reading the luminance of a row into the middle of a row padded by one
+   * pixel on each side. The luminance is the value the greyscale filter gives the pixel, and the
+   * padding and rows outside the image are filled as the edge mode says.
+   *
+   * @param image        the RGB image to read from
+   * @param row          the row to read, may lie outside the image
+   * @param edgeMode     how pixels outside the image are treated
+   * @param channelRows  three arrays of at least width entries to read the channels into
+   * @param luminanceRow array of at least width entries to calculate the luminance in
+   * @param padded       the padded row to fill
+   */
+  private static void readLuminanceRow(RgbBuffer image, int row, EdgeMode edgeMode,
+                                       int[][] channelRows, int[] luminanceRow, int[] padded) {
+    int width = image.getWidth();
+    int source = edgeMode.sourceIndex(row, image.getHeight());
+    if (source < 0) {
+      Arrays.fill(padded, 0);
+      return;
+    }
+    readLuminance(image, source, channelRows, luminanceRow);
+    System.arraycopy(luminanceRow, 0, padded, 1, width);
+    padded[0] = paddingValue(luminanceRow, -1, edgeMode);
+    padded[width + 1] = paddingValue(luminanceRow, width, edgeMode);
+  }
+
+  /**
+   * Reads the luminance of a row of an image, the value the greyscale filter gives each pixel.
+   *
+   * @param image        the RGB image to read from
+   * @param row          the row to read
+   * @param channelRows  three arrays of at least width entries to read the channels into
+   * @param luminanceRow array of at least width entries to write the luminance into
+   */
+  static void readLuminance(RgbBuffer image, int row, int[][] channelRows, int[] luminanceRow) {
+    for (int z = 0; z < 3; z++) {
+      image.readChannelRow(z, row, channelRows[z]);
     }
-    return applyGreyscale(finalArray);
+    dotProduct(greyscaleMatrix, 0, channelRows, luminanceRow);
+    clampRow(luminanceRow);
   }
 
   /*
@@ -415,30 +1332,25 @@ public final class ArrayFilter {
   /**
    * Crops the image by discarding pixels before the lower bounds and after the upper bounds.
    *
-   * @param rgbArray    array to be cropped
+   * @param image       image to be cropped
    * @param startIndexX start index of the crop for the x-axis
    * @param startIndexY start index of the crop for the y-axis
    * @param endIndexX   end index of the crop for the x-axis
    * @param endIndexY   end index of the crop for the y-axis
    *
-   * @return a 3D array of a cropped image
+   * @return a new buffer of a cropped image
    */
-  public static int[][][] crop(int[][][] rgbArray, int startIndexX, int startIndexY, int endIndexX,
-                               int endIndexY) {
+  public static RgbBuffer crop(RgbBuffer image, int startIndexX, int startIndexY,
+                               int endIndexX, int endIndexY) {
 
-    int[][][] finalArray = new int [endIndexY - startIndexY + 1][endIndexX - startIndexX + 1][3];
-    int i;
-    int j;
+    RgbBuffer finalImage = image.createBlank(endIndexX - startIndexX + 1,
+            endIndexY - startIndexY + 1);
     for (int r = startIndexY; r < endIndexY; r++) {
       for (int c = startIndexX; c < endIndexX; c++) {
-        for (int z = 0; z < 3; z++) {
-          i = r - startIndexY;
-          j = c - startIndexX;
-          finalArray[i][j][z] = rgbArray[r][c][z];
-        }
+        finalImage.setRgb(r - startIndexY, c - startIndexX, image.getRgb(r, c));
       }
     }
-    return finalArray;
+    return finalImage;
   }
 
   /*
@@ -449,64 +1361,651 @@ public final class ArrayFilter {
    * Equalizes the images' histogram. Best on greyscale images but will work on color images with
    * by equalizing each channel separately.
    *
-   * @param rgbArray rgb image to apply
-   * @return a 3D array of a equalized image
+   * @param image rgb image to apply
+   * @return a new buffer of a equalized image
    */
-  public static int[][][] histogramEqualization(int[][][] rgbArray) {
-    int[][][] finalArray = deepCopy3dArray(rgbArray);
+  public static RgbBuffer histogramEqualization(RgbBuffer image) {
+    return histogramEqualization(image, image.createBlank(image.getWidth(), image.getHeight()));
+  }
 
-    for (int z = 0; z < rgbArray[0][0].length; z++) {
-      // in one channel
-      double totalPixels = rgbArray.length * rgbArray[0].length;
-      double bins = 255 / totalPixels;
-      int[] originalHistogram = new int[256];
+  /**
+   * Equalizes the images' histogram, writing the result into a given buffer. The histograms of
+   * all channels are counted in one parallel pass, and the channels are then remapped through
+   * one table in another.
+   *
+   * @param image      rgb image to apply
+   * @param finalImage buffer of the same size to overwrite, may be the image itself
+   * @return the buffer holding the equalized image
+   */
+  public static RgbBuffer histogramEqualization(RgbBuffer image, RgbBuffer finalImage) {
+    return applyPointChain(image, finalImage, PointChain.equalization(), null);
+  }
+
+  /**
+   * Counts how many pixels of an image have each value in each channel, in one parallel pass.
+   *
+   * @param image the RGB image to count
+   * @return the histogram of the red, green and blue channel
+   */
+  static int[][] channelHistograms(RgbBuffer image) {
+    return pointHistograms(image, null, new ArrayList<>(), new ArrayList<>(), null);
+  }
+
+  /**
+   * Returns the histograms of an image once its histograms are equalized, worked out from the
+   * histograms before without counting the image again.
+   *
+   * @param histograms  the histogram of each channel of the image
+   * @param totalPixels the number of pixels of the image
+   * @return the histogram of each channel of the equalized image
+   */
+  static int[][] equalizedHistograms(int[][] histograms, int totalPixels) {
+    int[][] equalized = new int[3][];
+    for (int z = 0; z < 3; z++) {
+      equalized[z] = remapHistogram(histograms[z],
+              equalizationTable(histograms[z], totalPixels));
+    }
+    return equalized;
+  }
+
+  /**
+   * Private method for finding the histogram of a channel once its values are replaced through a
+   * table.
+   *
+   * @param histogram the number of pixels with each channel value
+   * @param table     the new value of each channel value
+   * @return the number of pixels with each new value
+   */
+  private static int[] remapHistogram(int[] histogram, int[] table) {
+    int[] remapped = new int[256];
+    for (int i = 0; i < 256; i++) {
+      remapped[table[i]] = remapped[table[i]] + histogram[i];
+    }
+    return remapped;
+  }
+
+  /**
+   * Private method for finding the new value of each channel value that equalizes a histogram,
+   * spreading the cumulative count of the values over 0 to 255.
+   *
+   * @param histogram   the number of pixels with each channel value
+   * @param totalPixels the number of pixels counted
+   * @return the new value of each channel value
+   */
+  private static int[] equalizationTable(int[] histogram, int totalPixels) {
+    double bins = 255 / (double) totalPixels;
+    int[] equalized = new int[256];
+    int cumulative = 0;
+    for (int i = 0; i < 256; i++) {
+      cumulative = cumulative + histogram[i];
+      equalized[i] = (int) (cumulative * bins);
+    }
+    return equalized;
+  }
+
+  /*
+   * ####################### Adaptive Histogram Equalization methods #######################
+   */
 
-      for (int r = 0; r < rgbArray.length; r++) {
-        for (int c = 0; c < rgbArray[r].length; c++) {
-          originalHistogram[rgbArray[r][c][z]]++;
+  /**
+   * Equalizes the histogram of each channel separately in every tile of a grid, limiting how much
+   * any one channel value can stretch the contrast (CLAHE). Each pixel is remapped by blending the
+   * tables of the four tiles whose centers surround it, so there are no seams between tiles. With
+   * a single tile and a clip limit of 256 or more this is plain histogram equalization.
+   *
+   * <p>The histograms of all tiles are counted in one parallel pass over bands of rows, and the
+   * image is remapped in another. Apart from the output only the tile tables are kept, so the
+   * memory used stays below that of the image. Grids with tiles smaller than
+   * {@value #MIN_TILE_SIZE} pixels along an axis are made coarser on that axis.
+   *
+   * @param image      the RGB image to equalize
+   * @param finalImage buffer of the same size to overwrite, may be the image itself
+   * @param tilesX     the number of tiles across the image
+   * @param tilesY     the number of tiles down the image
+   * @param clipLimit  the most pixels a channel value may have in a tile, as a multiple of the
+   *                   average count of a value, with the pixels above it shared out over all values
+   * @return the buffer holding the equalized image
+   * @throws IllegalArgumentException if a number of tiles is not positive or the clip limit is
+   *                                  not a positive number
+   */
+  public static RgbBuffer applyClahe(RgbBuffer image, RgbBuffer finalImage, int tilesX,
+          int tilesY, double clipLimit) throws IllegalArgumentException {
+    if (tilesX < 1 || tilesY < 1) {
+      throw new IllegalArgumentException("Number of tiles must be positive.");
+    }
+    if (!(clipLimit > 0) || Double.isInfinite(clipLimit)) {
+      throw new IllegalArgumentException("Clip limit must be a positive number.");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int columnsOfTiles = Math.max(1, Math.min(tilesX, width / MIN_TILE_SIZE));
+    int rowsOfTiles = Math.max(1, Math.min(tilesY, height / MIN_TILE_SIZE));
+    int tileStride = columnsOfTiles * 768;
+
+    // Offset of the tables of the tile each column falls in, within a row of tiles
+    int[] columnTiles = new int[width];
+    for (int t = 0; t < columnsOfTiles; t++) {
+      for (int c = tileStart(t, width, columnsOfTiles);
+           c < tileStart(t + 1, width, columnsOfTiles); c++) {
+        columnTiles[c] = t * 768;
+      }
+    }
+
+    // Each band counts into the rows of tiles it covers, which are then added up
+    int bands = RowBands.bandCount(height);
+    int[][] bandCounts = new int[bands][];
+    int[] bandFirstTiles = new int[bands];
+    RowBands.forEach(height, bands, (band, startRow, endRow) -> {
+      int firstTile = tileOf(startRow, height, rowsOfTiles);
+      int[] counts = new int[(tileOf(endRow - 1, height, rowsOfTiles) - firstTile + 1)
+              * tileStride];
+      int[] row = new int[width];
+      int tile = firstTile;
+      for (int r = startRow; r < endRow; r++) {
+        while (r >= tileStart(tile + 1, height, rowsOfTiles)) {
+          tile++;
+        }
+        int offset = (tile - firstTile) * tileStride;
+        for (int z = 0; z < 3; z++) {
+          image.readChannelRow(z, r, row);
+          int channelOffset = offset + z * 256;
+          for (int c = 0; c < width; c++) {
+            counts[channelOffset + columnTiles[c] + row[c]]++;
+          }
         }
       }
+      bandCounts[band] = counts;
+      bandFirstTiles[band] = firstTile;
+    });
+    int[] tables = new int[rowsOfTiles * tileStride];
+    for (int band = 0; band < bands; band++) {
+      int offset = bandFirstTiles[band] * tileStride;
+      for (int i = 0; i < bandCounts[band].length; i++) {
+        tables[offset + i] = tables[offset + i] + bandCounts[band][i];
+      }
+    }
 
-      int[] originalCumfd = new int[256];
-      originalCumfd[0] = originalHistogram[0];
-      for (int i = 1; i < 256; i++) {
-        originalCumfd[i] = originalCumfd[i - 1] + originalHistogram[i];
+    // Clip every histogram and replace it by its table, one band for each row of tiles
+    RowBands.forEach(rowsOfTiles, rowsOfTiles, (band, startRow, endRow) -> {
+      int tileHeight = tileStart(band + 1, height, rowsOfTiles)
+              - tileStart(band, height, rowsOfTiles);
+      int[] histogram = new int[256];
+      for (int t = 0; t < columnsOfTiles; t++) {
+        int tilePixels = tileHeight * (tileStart(t + 1, width, columnsOfTiles)
+                - tileStart(t, width, columnsOfTiles));
+        int limit = (int) Math.max(1, Math.min(tilePixels, clipLimit * tilePixels / 256));
+        for (int z = 0; z < 3; z++) {
+          int offset = band * tileStride + t * 768 + z * 256;
+          System.arraycopy(tables, offset, histogram, 0, 256);
+          clipHistogram(histogram, limit);
+          System.arraycopy(equalizationTable(histogram, tilePixels), 0, tables, offset, 256);
+        }
+      }
+    });
+
+    // Remap every pixel from the tables of the tiles around it, with 8 bit weights on each axis
+    int[][] columnWeights = tileWeights(width, columnsOfTiles);
+    int[] lowColumns = columnWeights[0];
+    int[] highColumns = columnWeights[1];
+    int[] highColumnWeights = columnWeights[2];
+    for (int c = 0; c < width; c++) {
+      lowColumns[c] = lowColumns[c] * 768;
+      highColumns[c] = highColumns[c] * 768;
+    }
+    int[][] rowWeights = tileWeights(height, rowsOfTiles);
+    RowBands.forEach(height, (band, startRow, endRow) -> {
+      int[] row = new int[width];
+      int[] pixels = new int[width];
+      for (int r = startRow; r < endRow; r++) {
+        int highRowWeight = rowWeights[2][r];
+        int lowRowWeight = 256 - highRowWeight;
+        for (int z = 0; z < 3; z++) {
+          image.readChannelRow(z, r, row);
+          int top = rowWeights[0][r] * tileStride + z * 256;
+          int bottom = rowWeights[1][r] * tileStride + z * 256;
+          int shift = 16 - 8 * z;
+          for (int c = 0; c < width; c++) {
+            int value = row[c];
+            int highWeight = highColumnWeights[c];
+            int lowWeight = 256 - highWeight;
+            int topValue = lowWeight * tables[top + lowColumns[c] + value]
+                    + highWeight * tables[top + highColumns[c] + value];
+            int bottomValue = lowWeight * tables[bottom + lowColumns[c] + value]
+                    + highWeight * tables[bottom + highColumns[c] + value];
+            int blended = (lowRowWeight * topValue + highRowWeight * bottomValue + 32768) >> 16;
+            pixels[c] = z == 0 ? blended << shift : pixels[c] | blended << shift;
+          }
+        }
+        finalImage.writeRgbRow(r, pixels);
       }
+    });
+    return finalImage;
+  }
 
-      double[] idealCumfd = new double[256];
+  /**
+   * Private method for finding the first pixel of a tile along one axis. Pixels are shared out
+   * between the tiles as evenly as possible.
+   *
+   * @param tile  the index of the tile, or the number of tiles for the end of the last tile
+   * @param size  the number of pixels along the axis
+   * @param tiles the number of tiles along the axis
+   * @return the first pixel of the tile
+   */
+  private static int tileStart(int tile, int size, int tiles) {
+    return (int) ((long) tile * size / tiles);
+  }
+
+  /**
+   * Private method for finding the tile a pixel falls in along one axis.
+   *
+   * @param pixel the index of the pixel
+   * @param size  the number of pixels along the axis
+   * @param tiles the number of tiles along the axis
+   * @return the index of the tile holding the pixel
+   */
+  private static int tileOf(int pixel, int size, int tiles) {
+    int tile = (int) ((long) pixel * tiles / size);
+    while (pixel >= tileStart(tile + 1, size, tiles)) {
+      tile++;
+    }
+    return tile;
+  }
+
+  /**
+   * Private method for finding, for every pixel along one axis, the tiles whose centers are
+   * either side of it and how far it is from the first toward the second. Pixels before the
+   * first center or after the last only use that tile.
+   *
+   * @param size  the number of pixels along the axis
+   * @param tiles the number of tiles along the axis
+   * @return the lower tile, the higher tile and the weight of the higher tile out of 256 for
+   *         each pixel
+   */
+  private static int[][] tileWeights(int size, int tiles) {
+    int[][] weights = new int[3][size];
+    int low = 0;
+    for (int i = 0; i < size; i++) {
+      // Positions are doubled so that the centers of pixels and tiles are whole numbers
+      int position = 2 * i + 1;
+      while (low + 1 < tiles && tileCenter(low + 1, size, tiles) <= position) {
+        low++;
+      }
+      int lowCenter = tileCenter(low, size, tiles);
+      if (position <= lowCenter || low + 1 == tiles) {
+        weights[0][i] = low;
+        weights[1][i] = low;
+        continue;
+      }
+      int distance = tileCenter(low + 1, size, tiles) - lowCenter;
+      weights[0][i] = low;
+      weights[1][i] = low + 1;
+      weights[2][i] = (int) (((long) (position - lowCenter) * 512 + distance) / (2 * distance));
+    }
+    return weights;
+  }
+
+  /**
+   * Private method for finding twice the center of a tile along one axis.
+   *
+   * @param tile  the index of the tile
+   * @param size  the number of pixels along the axis
+   * @param tiles the number of tiles along the axis
+   * @return the sum of the start and end of the tile
+   */
+  private static int tileCenter(int tile, int size, int tiles) {
+    return tileStart(tile, size, tiles) + tileStart(tile + 1, size, tiles);
+  }
+
+  /**
+   * Private method for capping the count of every value of a histogram, sharing the pixels above
+   * the cap out evenly over all 256 values so the total stays the same. The pixels left over
+   * after an even share go to values spread across the range.
+   *
+   * @param histogram the number of pixels with each channel value, changed in place
+   * @param limit     the most pixels a value may have before sharing out
+   */
+  private static void clipHistogram(int[] histogram, int limit) {
+    int excess = 0;
+    for (int i = 0; i < 256; i++) {
+      if (histogram[i] > limit) {
+        excess = excess + histogram[i] - limit;
+        histogram[i] = limit;
+      }
+    }
+    int share = excess / 256;
+    int remainder = excess - share * 256;
+    for (int i = 0; i < 256; i++) {
+      histogram[i] = histogram[i] + share;
+    }
+    if (remainder > 0) {
+      int step = 256 / remainder;
+      for (int i = 0; remainder > 0; i = i + step, remainder--) {
+        histogram[i]++;
+      }
+    }
+  }
+
+  /*
+   * ################################ Point chain methods ################################
+   */
+
+  /**
+   * Applies a chain of color matrices and histogram equalizations to an image, with the same
+   * result as applying them one at a time. The steps before the last matrix whose rows are all
+   * the same, such as greyscale, are applied to a row of pixels at a time while it is in cache.
+   * Every channel after that matrix only depends on the grey value it gives, so the steps from
+   * there on are worked out once for each of the 256 grey values and looked up.
+   *
+   * <p>A histogram equalization needs the histogram of what the steps before it make of the image.
+   * Histograms already counted are carried through equalizations without counting again. When
+   * the steps before are only lookups the histogram is counted by a pass that only reads the
+   * image, otherwise their result is written out and counted in the same pass, which is cheaper
+   * than working out the matrices twice. Steps that are all lookups are composed into one table
+   * of pixels.
+   *
+   * @param image      the RGB image to be transformed
+   * @param finalImage buffer of the same size to overwrite, may be the image itself
+   * @param chain      the steps to apply
+   * @param histograms the histogram of each channel of the image if already counted, or null
+   * @return the buffer holding the transformed image
+   */
+  static RgbBuffer applyPointChain(RgbBuffer image, RgbBuffer finalImage, PointChain chain,
+                                   int[][] histograms) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    if (width == 0 || height == 0) {
+      return finalImage;
+    }
+    List<CompiledColorMatrix> steps = chain.steps;
+    int greyStep = -1;
+    for (int i = 0; i < steps.size(); i++) {
+      if (steps.get(i) != null && steps.get(i).sameRows) {
+        greyStep = i;
+      }
+    }
+
+    // The steps applied to every pixel, equalizations turned into tables of new channel values
+    RgbBuffer source = image;
+    List<CompiledColorMatrix> matrices = new ArrayList<>();
+    List<int[][]> remaps = new ArrayList<>();
+    int pixelSteps = greyStep < 0 ? steps.size() : greyStep;
+    int[][] counted = histograms == null ? null : histograms.clone();
+    for (int i = 0; i < pixelSteps; i++) {
+      CompiledColorMatrix step = steps.get(i);
+      int[][] equalized = null;
+      if (step == null) {
+        if (counted == null && matrices.stream().anyMatch(matrix -> matrix != null)) {
+          counted = pointHistograms(source, finalImage, matrices, remaps, null);
+          source = finalImage;
+          matrices.clear();
+          remaps.clear();
+        } else if (counted == null) {
+          counted = pointHistograms(source, null, matrices, remaps, null);
+        }
+        equalized = new int[3][];
+        for (int z = 0; z < 3; z++) {
+          equalized[z] = equalizationTable(counted[z], height * width);
+          counted[z] = remapHistogram(counted[z], equalized[z]);
+        }
+      } else {
+        counted = null;
+      }
+      matrices.add(step);
+      remaps.add(equalized);
+    }
+
+    if (greyStep < 0 && matrices.stream().anyMatch(matrix -> matrix != null)) {
+      RgbBuffer pixelSource = source;
+      RowBands.forEach(height, (band, startRow, endRow) -> {
+        int[][] channelRows = new int[3][width];
+        int[][] resultRows = new int[3][width];
+        for (int r = startRow; r < endRow; r++) {
+          for (int z = 0; z < 3; z++) {
+            pixelSource.readChannelRow(z, r, channelRows[z]);
+          }
+          applyPointSteps(matrices, remaps, channelRows, resultRows);
+          for (int z = 0; z < 3; z++) {
+            finalImage.writeChannelRow(z, r, channelRows[z]);
+          }
+        }
+      });
+      return finalImage;
+    }
+    if (greyStep < 0) {
+      writeRemapped(source, finalImage, remaps);
+      return finalImage;
+    }
+
+    // Equalizations after the grey matrix all count the grey values
+    CompiledColorMatrix greyMatrix = steps.get(greyStep);
+    int[] greyHistogram = null;
+    if (steps.subList(greyStep + 1, steps.size()).contains(null)) {
+      if (matrices.stream().anyMatch(matrix -> matrix != null)) {
+        greyHistogram = pointHistograms(source, finalImage, matrices, remaps, greyMatrix)[0];
+        source = finalImage;
+        matrices.clear();
+        remaps.clear();
+      } else {
+        greyHistogram = pointHistograms(source, null, matrices, remaps, greyMatrix)[0];
+      }
+    }
+
+    // The value of each channel for every grey value, with the steps after the grey matrix
+    int[][] greyTables = new int[3][256];
+    int[][] scratchTables = new int[3][256];
+    for (int z = 0; z < 3; z++) {
       for (int i = 0; i < 256; i++) {
-        idealCumfd[i] = originalCumfd[i] * bins;
+        greyTables[z][i] = i;
       }
+    }
+    for (int i = greyStep + 1; i < steps.size(); i++) {
+      CompiledColorMatrix step = steps.get(i);
+      if (step == null) {
+        for (int z = 0; z < 3; z++) {
+          int[] histogram = new int[256];
+          for (int grey = 0; grey < 256; grey++) {
+            histogram[greyTables[z][grey]] += greyHistogram[grey];
+          }
+          int[] equalized = equalizationTable(histogram, height * width);
+          for (int grey = 0; grey < 256; grey++) {
+            greyTables[z][grey] = equalized[greyTables[z][grey]];
+          }
+        }
+      } else {
+        applyMatrixRows(step, greyTables, scratchTables);
+        int[][] swap = greyTables;
+        greyTables = scratchTables;
+        scratchTables = swap;
+      }
+    }
+    int[] greyPixels = new int[256];
+    for (int grey = 0; grey < 256; grey++) {
+      greyPixels[grey] = greyTables[0][grey] << 16 | greyTables[1][grey] << 8
+              | greyTables[2][grey];
+    }
 
-      for (int r = 0; r < rgbArray.length; r++) {
-        for (int c = 0; c < rgbArray[r].length; c++) {
-          int newValue = (int) idealCumfd[rgbArray[r][c][z]];
-          finalArray[r][c][z] = newValue;
+    RgbBuffer pixelSource = source;
+
+    RowBands.forEach(height, (band, startRow, endRow) -> {
+      int[][] channelRows = new int[3][width];
+      int[][] resultRows = new int[3][width];
+      int[] greyRow = new int[width];
+      for (int r = startRow; r < endRow; r++) {
+        for (int z = 0; z < 3; z++) {
+          pixelSource.readChannelRow(z, r, channelRows[z]);
         }
+        applyPointSteps(matrices, remaps, channelRows, resultRows);
+        dotProduct(greyMatrix, 0, channelRows, greyRow);
+        for (int c = 0; c < width; c++) {
+          greyRow[c] = greyPixels[Math.max(0, Math.min(255, greyRow[c]))];
+        }
+        finalImage.writeRgbRow(r, greyRow);
+      }
+    });
+    return finalImage;
+  }
+
+  /**
+   * Private method for applying steps that are all lookups in one pass, through one table of
+   * pixels for each channel that the tables of the steps are composed into.
+   *
+   * @param image      the RGB image to be transformed
+   * @param finalImage buffer of the same size to overwrite, may be the image itself
+   * @param remaps     the new channel values of each step
+   */
+  private static void writeRemapped(RgbBuffer image, RgbBuffer finalImage, List<int[][]> remaps) {
+    int[][] pixels = new int[3][256];
+    for (int z = 0; z < 3; z++) {
+      for (int i = 0; i < 256; i++) {
+        int value = i;
+        for (int[][] remap : remaps) {
+          value = remap[z][value];
+        }
+        pixels[z][i] = value << (16 - 8 * z);
       }
     }
-    return finalArray;
+    int width = image.getWidth();
+    RowBands.forEach(image.getHeight(), (band, startRow, endRow) -> {
+      int[][] channelRows = new int[3][width];
+      int[] resultRow = new int[width];
+      for (int r = startRow; r < endRow; r++) {
+        for (int z = 0; z < 3; z++) {
+          image.readChannelRow(z, r, channelRows[z]);
+        }
+        int[] red = channelRows[0];
+        int[] green = channelRows[1];
+        int[] blue = channelRows[2];
+        for (int c = 0; c < width; c++) {
+          resultRow[c] = pixels[0][red[c]] | pixels[1][green[c]] | pixels[2][blue[c]];
+        }
+        finalImage.writeRgbRow(r, resultRow);
+      }
+    });
   }
 
-  /*
-   * ################################ Helper methods ################################
+  /**
+   * Private method for counting the channel values the steps of a point chain make of an image,
+   * or the grey values when a grey matrix follows the steps. What the steps make of the image can
+   * be written out in the same pass.
+   *
+   * @param image       the RGB image to count
+   * @param destination buffer of the same size to write what the steps make of the image into,
+   *                    may be the image itself, or null to only count
+   * @param matrices    the color matrix of each step, or null where the step is a remap
+   * @param remaps      the new channel values of each remap step, or null where it is a matrix
+   * @param greyMatrix  the matrix giving the grey value to count, or null to count each channel
+   * @return the histogram of each channel, or of the grey values as the first
    */
+  private static int[][] pointHistograms(RgbBuffer image, RgbBuffer destination,
+                                         List<CompiledColorMatrix> matrices,
+                                         List<int[][]> remaps, CompiledColorMatrix greyMatrix) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    int channels = greyMatrix == null ? 3 : 1;
+
+    // Each band counts its own rows, the counts are then added up
+    int bands = RowBands.bandCount(height);
+    int[][][] bandHistograms = new int[bands][channels][256];
+    RowBands.forEach(height, bands, (band, startRow, endRow) -> {
+      int[][] channelRows = new int[3][width];
+      int[][] resultRows = new int[3][width];
+      int[] greyRow = new int[width];
+      for (int r = startRow; r < endRow; r++) {
+        for (int z = 0; z < 3; z++) {
+          image.readChannelRow(z, r, channelRows[z]);
+        }
+        applyPointSteps(matrices, remaps, channelRows, resultRows);
+        if (destination != null) {
+          for (int z = 0; z < 3; z++) {
+            destination.writeChannelRow(z, r, channelRows[z]);
+          }
+        }
+        if (greyMatrix != null) {
+          dotProduct(greyMatrix, 0, channelRows, greyRow);
+          clampRow(greyRow);
+        }
+        for (int z = 0; z < channels; z++) {
+          int[] histogram = bandHistograms[band][z];
+          int[] row = greyMatrix == null ? channelRows[z] : greyRow;
+          for (int c = 0; c < width; c++) {
+            histogram[row[c]]++;
+          }
+        }
+      }
+    });
+
+    int[][] histograms = new int[channels][256];
+    for (int band = 0; band < bands; band++) {
+      for (int z = 0; z < channels; z++) {
+        for (int i = 0; i < 256; i++) {
+          histograms[z][i] = histograms[z][i] + bandHistograms[band][z][i];
+        }
+      }
+    }
+    return histograms;
+  }
 
   /**
-   * Private method for creating a deep copy of a 3D array. Assumes regular dimensions.
+   * Private method for applying the steps of a point chain to a row of pixels. The channels are
+   * clamped to 0 to 255 after every matrix, as storing them would.
    *
-   * @param array to be deep copied
-   * @return new array
+   * @param matrices    the color matrix of each step, or null where the step is a remap
+   * @param remaps      the new channel values of each remap step, or null where it is a matrix
+   * @param channelRows the red, green and blue values of the row, replaced by the result
+   * @param resultRows  three rows of the same length to work in, overwritten
    */
-  private static int[][][] deepCopy3dArray(int[][][] array) {
-    int[][][] finalArray = new int[array.length][array[0].length][array[0][0].length];
+  private static void applyPointSteps(List<CompiledColorMatrix> matrices, List<int[][]> remaps,
+                                      int[][] channelRows, int[][] resultRows) {
+    for (int i = 0; i < matrices.size(); i++) {
+      CompiledColorMatrix matrix = matrices.get(i);
+      if (matrix == null) {
+        int[][] equalized = remaps.get(i);
+        for (int z = 0; z < 3; z++) {
+          int[] row = channelRows[z];
+          int[] table = equalized[z];
+          for (int c = 0; c < row.length; c++) {
+            row[c] = table[row[c]];
+          }
+        }
+      } else {
+        applyMatrixRows(matrix, channelRows, resultRows);
+        for (int z = 0; z < 3; z++) {
+          int[] swap = channelRows[z];
+          channelRows[z] = resultRows[z];
+          resultRows[z] = swap;
+        }
+      }
+    }
+  }
 
-    for (int r = 0; r < array.length; r++) {
-      for (int c = 0; c < array[r].length; c++) {
-        finalArray[r][c] = Arrays.copyOf(array[r][c], array[r][c].length);
+  /**
+   * Private method for applying a color matrix to a row of pixels, clamping the result to 0 to
+   * 255.
+   *
+   * @param matrix      the compiled color transformation matrix
+   * @param channelRows the red, green and blue values of the row
+   * @param resultRows  three rows of the same length to write the result into
+   */
+  private static void applyMatrixRows(CompiledColorMatrix matrix, int[][] channelRows,
+                                      int[][] resultRows) {
+    for (int z = 0; z < 3; z++) {
+      if (z > 0 && Arrays.equals(matrix.weights[z], matrix.weights[z - 1])) {
+        System.arraycopy(resultRows[z - 1], 0, resultRows[z], 0, resultRows[z].length);
+      } else {
+        dotProduct(matrix, z, channelRows, resultRows[z]);
+        clampRow(resultRows[z]);
       }
     }
-    return finalArray;
   }
 
+  /**
+   * Private method for clamping every value of a row to 0 to 255.
+   *
+   * @param row the values to clamp
+   */
+  private static void clampRow(int[] row) {
+    for (int c = 0; c < row.length; c++) {
+      row[c] = Math.max(0, Math.min(255, row[c]));
+    }
+  }
 }
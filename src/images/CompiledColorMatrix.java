@@ -0,0 +1,177 @@
+package images;
+
+import java.util.Arrays;
+
+/**
+ * A 3x3 color transformation matrix analysed once for the fastest way to apply it. Each row of the
+ * matrix gives one output channel as a weighted sum of the red, green and blue values of the same
+ * pixel. Matrices whose weights are binary fractions, such as channel swaps or averages of two
+ * channels, are applied in fixed point, which gives exactly the same result. Other matrices are
+ * applied through tables holding every channel value times every weight in fixed point, so each
+ * output channel takes three lookups and two adds. Matrices are cached by their contents, so a
+ * matrix used again skips the analysis and the tables.
+ *
+ * <p>The tables give the same result as the weighted sum in floating point everywhere but close to
+ * a half, where the two can round differently. Each table entry is within half a unit of the exact
+ * product, so a sum further than two units from a half rounds the same as the exact sum, and so
+ * does the floating point sum, whose error is far smaller than a unit. Sums closer to a half are
+ * worked out in floating point instead.
+ */
+final class CompiledColorMatrix {
+
+  // Most matrices kept compiled at once
+  private static final int MAX_CACHED_MATRICES = 64;
+
+  // Most and fewest fraction bits of the lookup tables, and how many units from a half a table sum
+  // has to be to round the same as the floating point sum
+  private static final int MAX_LOOKUP_BITS = 22;
+  private static final int MIN_LOOKUP_BITS = 8;
+  static final int LOOKUP_MARGIN = 2;
+
+  // Number of values a channel can take
+  private static final int CHANNEL_VALUES = 256;
+
+  private static final ContentCache<CompiledColorMatrix> cache =
+          new ContentCache<>(MAX_CACHED_MATRICES);
+
+  // The matrix, one row per output channel
+  final double[][] weights;
+
+  // The matrix in fixed point with the given fraction bits, or null if it can't be applied so
+  final int[][] fixedWeights;
+  final int bits;
+
+  // For each output channel the red, green and blue tables of every channel value times its
+  // weight in fixed point, half a unit added to the red table, or null if the matrix is applied
+  // in fixed point or its weights are too large for the tables
+  final int[][][] lookupTables;
+  final int lookupBits;
+
+  // Whether every row is the same, so the three channels of the result are one grey value
+  final boolean sameRows;
+
+  /**
+   * Returns the compiled form of a color matrix, analysing it only if no matrix with the same
+   * weights was compiled recently.
+   *
+   * @param matrix the 3x3 color transformation matrix
+   * @return the compiled matrix
+   * @throws IllegalArgumentException if the matrix is not 3x3 or a weight is not a finite number
+   */
+  static CompiledColorMatrix compile(double[][] matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.length != 3) {
+      throw new IllegalArgumentException("Color matrix must have 3 rows of 3 weights.");
+    }
+    for (double[] matrixRow : matrix) {
+      if (matrixRow == null || matrixRow.length != 3) {
+        throw new IllegalArgumentException("Color matrix must have 3 rows of 3 weights.");
+      }
+      for (double weight : matrixRow) {
+        if (!Double.isFinite(weight)) {
+          throw new IllegalArgumentException("Color matrix weights must be numbers.");
+        }
+      }
+    }
+    return cache.get(matrix, CompiledColorMatrix::new);
+  }
+
+  /**
+   * Constructor analysing a validated matrix, which is kept without copying.
+   *
+   * @param matrix the color transformation matrix
+   */
+  private CompiledColorMatrix(double[][] matrix) {
+    this.weights = matrix;
+    this.sameRows = Arrays.equals(matrix[0], matrix[1]) && Arrays.equals(matrix[1], matrix[2]);
+
+    int fractionBits = 0;
+    for (double[] matrixRow : matrix) {
+      int rowBits = CompiledKernel.fractionBits(matrixRow);
+      if (rowBits < 0) {
+        fractionBits = -1;
+        break;
+      }
+      fractionBits = Math.max(fractionBits, rowBits);
+    }
+    int[][] matrixFixed = null;
+    if (fractionBits >= 0) {
+      matrixFixed = new int[3][];
+      for (int z = 0; z < 3; z++) {
+        matrixFixed[z] = CompiledKernel.toFixedPoint(matrix[z], fractionBits);
+        if (!CompiledKernel.fitsInInt(CompiledKernel.absoluteSum(matrixFixed[z]),
+                fractionBits)) {
+          matrixFixed = null;
+          break;
+        }
+      }
+    }
+    this.fixedWeights = matrixFixed;
+    this.bits = Math.max(fractionBits, 0);
+
+    // The tables take the most fraction bits for which no sum can overflow
+    int tableBits = -1;
+    if (matrixFixed == null) {
+      for (int candidate = MAX_LOOKUP_BITS; candidate >= MIN_LOOKUP_BITS; candidate--) {
+        if (tablesFitInInt(matrix, candidate)) {
+          tableBits = candidate;
+          break;
+        }
+      }
+    }
+    this.lookupBits = Math.max(tableBits, 0);
+    this.lookupTables = tableBits < 0 ? null : lookupTables(matrix, tableBits);
+  }
+
+  /**
+   * Private method for checking that the table sums of every row of a matrix fit in an int with
+   * the given fraction bits, allowing for the rounding of each entry and the half added.
+   *
+   * @param matrix the color transformation matrix
+   * @param bits   the fraction bits of the tables
+   * @return true if no table sum can overflow
+   */
+  private static boolean tablesFitInInt(double[][] matrix, int bits) {
+    for (double[] matrixRow : matrix) {
+      long weightSum = 0;
+      for (double weight : matrixRow) {
+        double scaled = Math.ceil(Math.abs(weight) * (1 << bits)) + 1;
+        if (scaled > Integer.MAX_VALUE) {
+          return false;
+        }
+        weightSum = weightSum + (long) scaled;
+      }
+      if (!CompiledKernel.fitsInInt(weightSum, bits)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Private method for building the lookup tables of a matrix. Each entry is the product of a
+   * channel value and a weight as the floating point sum takes it, scaled and rounded to the
+   * nearest unit.
+   *
+   * @param matrix the color transformation matrix
+   * @param bits   the fraction bits of the tables
+   * @return the tables of each output channel
+   */
+  private static int[][][] lookupTables(double[][] matrix, int bits) {
+    double scale = 1 << bits;
+    int[][][] tables = new int[3][3][CHANNEL_VALUES];
+    for (int z = 0; z < 3; z++) {
+      for (int channel = 0; channel < 3; channel++) {
+        double weight = matrix[z][channel];
+        int[] table = tables[z][channel];
+        for (int value = 0; value < CHANNEL_VALUES; value++) {
+          table[value] = (int) Math.round(value * weight * scale);
+        }
+      }
+      // Rounding to nearest becomes a shift once half a unit is added to every sum
+      for (int value = 0; value < CHANNEL_VALUES; value++) {
+        tables[z][0][value] += 1 << (bits - 1);
+      }
+    }
+    return tables;
+  }
+}
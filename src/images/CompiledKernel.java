@@ -0,0 +1,486 @@
+package images;
+
+/**
+ * A filter kernel analysed once for the fastest way to apply it. The analysis finds whether the
+ * kernel is the outer product of a column and a row, whether its weights are binary fractions
+ * that can be summed exactly in fixed point, whether it is mirror symmetric and how many of its
+ * entries are not zero, and from that picks the engine that applies it. Kernels are cached by
+ * their contents, so a kernel used again skips the analysis.
+ *
+ * <p>Entries line up with pixels with the center of the kernel at row (height - 1) / 2 and column
+ * (width - 1) / 2, each entry weighting the pixel under it.
+ */
+final class CompiledKernel {
+
+  /**
+   * The ways a kernel can be applied.
+   */
+  enum Engine {
+
+    /**
+     * Horizontal then vertical pass over fixed point factors.
+     */
+    FIXED_POINT_SEPARABLE,
+
+    /**
+     * Horizontal then vertical pass over floating point factors.
+     */
+    SEPARABLE,
+
+    /**
+     * Every entry applied directly in fixed point.
+     */
+    FIXED_POINT_DIRECT,
+
+    /**
+     * Every entry applied directly in floating point.
+     */
+    DIRECT,
+
+    /**
+     * Tiles of the image filtered through the fast Fourier transform.
+     */
+    FFT
+  }
+
+  // Largest difference, relative to the largest entry, allowed between a kernel and the outer
+  // product of its factors for it to be applied as two passes
+  private static final double SEPARABLE_TOLERANCE = 1e-12;
+
+  // Most fraction bits a weight may have for a kernel to be applied in fixed point, and the
+  // largest channel value a fixed point sum has to allow for
+  private static final int MAX_FRACTION_BITS = 16;
+  private static final int MAX_CHANNEL = 255;
+
+  // Cost of one fixed point multiply and add relative to one in floating point, as measured
+  private static final double FIXED_POINT_ENTRY_COST = 0.3;
+
+  // Cost of one pass over a pixel regardless of the kernel, for reading, rounding, clamping and
+  // writing its channels, in floating point multiply and adds as measured
+  private static final double PASS_COST = 8.0;
+
+  // Most kernels kept compiled at once
+  private static final int MAX_CACHED_KERNELS = 64;
+
+  private static final ContentCache<CompiledKernel> cache =
+          new ContentCache<>(MAX_CACHED_KERNELS);
+
+  // The kernel and its shape
+  final double[][] weights;
+  final int height;
+  final int width;
+
+  // The engine chosen, and the tile size when it is the transform
+  final Engine engine;
+  final int tileSize;
+
+  // The engine that applies the kernel without the transform, and the cost of one channel of one
+  // pixel with it, which the transform gives way to on images shorter than a strip of its tiles
+  final Engine directEngine;
+  final double directCost;
+
+  // The column and row whose outer product is the kernel, or null if it is not separable
+  final double[] column;
+  final double[] row;
+
+  // The factors or the whole kernel in fixed point with the given fraction bits, or null when
+  // the engine does not use them
+  final int[] fixedColumn;
+  final int[] fixedRow;
+  final int[][] fixedWeights;
+  final int bits;
+
+  // Whether every row reads the same backwards, and whether the rows read the same bottom up
+  final boolean symmetricRows;
+  final boolean symmetricColumns;
+
+  // Number of entries that are not zero
+  final int taps;
+
+  // Estimated cost of filtering one pixel with the chosen engine, in floating point multiply and
+  // adds
+  final double cost;
+
+  /**
+   * Returns the compiled form of a kernel, analysing it only if no kernel with the same weights
+   * was compiled recently.
+   *
+   * @param kernel the filter kernel, every row the same length
+   * @return the compiled kernel
+   * @throws IllegalArgumentException if the kernel is empty, its rows differ in length or a
+   *                                  weight is not a finite number
+   */
+  static CompiledKernel compile(double[][] kernel) throws IllegalArgumentException {
+    if (kernel == null || kernel.length == 0 || kernel[0] == null || kernel[0].length == 0) {
+      throw new IllegalArgumentException("Kernel can't be empty.");
+    }
+    for (double[] kernelRow : kernel) {
+      if (kernelRow == null || kernelRow.length != kernel[0].length) {
+        throw new IllegalArgumentException("Kernel rows must all be the same length.");
+      }
+      for (double weight : kernelRow) {
+        if (!Double.isFinite(weight)) {
+          throw new IllegalArgumentException("Kernel weights must be numbers.");
+        }
+      }
+    }
+    return cache.get(kernel, CompiledKernel::new);
+  }
+
+  /**
+   * Returns the number of times a kernel was found already compiled.
+   *
+   * @return the number of cache hits
+   */
+  static long getCacheHits() {
+    return cache.getHits();
+  }
+
+  /**
+   * Returns the number of times a kernel had to be analysed.
+   *
+   * @return the number of cache misses
+   */
+  static long getCacheMisses() {
+    return cache.getMisses();
+  }
+
+  /**
+   * Constructor analysing a validated kernel, which is kept without copying.
+   *
+   * @param kernel the filter kernel
+   */
+  private CompiledKernel(double[][] kernel) {
+    this.weights = kernel;
+    this.height = kernel.length;
+    this.width = kernel[0].length;
+
+    int count = 0;
+    boolean rowsMirror = true;
+    boolean columnsMirror = true;
+    for (int r = 0; r < this.height; r++) {
+      for (int c = 0; c < this.width; c++) {
+        if (kernel[r][c] != 0) {
+          count++;
+        }
+        rowsMirror = rowsMirror && kernel[r][c] == kernel[r][this.width - 1 - c];
+        columnsMirror = columnsMirror && kernel[r][c] == kernel[this.height - 1 - r][c];
+      }
+    }
+    this.taps = count;
+    this.symmetricRows = rowsMirror;
+    this.symmetricColumns = columnsMirror;
+
+    // Separable kernels take the two passes, in fixed point when the factors allow it
+    double[][] factors = separate(kernel);
+    int[] columnFixed = null;
+    int[] rowFixed = null;
+    int[][] kernelFixed = null;
+    int fractionBits = 0;
+    double directCost;
+    if (factors != null) {
+      int columnBits = fractionBits(factors[0]);
+      int rowBits = fractionBits(factors[1]);
+      if (columnBits >= 0 && rowBits >= 0) {
+        columnFixed = toFixedPoint(factors[0], columnBits);
+        rowFixed = toFixedPoint(factors[1], rowBits);
+        fractionBits = columnBits + rowBits;
+        if (!fitsInInt(absoluteSum(columnFixed) * absoluteSum(rowFixed), fractionBits)) {
+          columnFixed = null;
+          rowFixed = null;
+        }
+      }
+      directCost = (nonZero(factors[0]) + nonZero(factors[1]))
+              * (columnFixed != null ? FIXED_POINT_ENTRY_COST : 1);
+    } else {
+      // Kernels of binary fractions are applied in fixed point, which gives the same result
+      for (double[] kernelRow : kernel) {
+        int rowBits = fractionBits(kernelRow);
+        if (rowBits < 0) {
+          fractionBits = -1;
+          break;
+        }
+        fractionBits = Math.max(fractionBits, rowBits);
+      }
+      if (fractionBits >= 0) {
+        kernelFixed = new int[this.height][];
+        long weightSum = 0;
+        for (int r = 0; r < this.height; r++) {
+          kernelFixed[r] = toFixedPoint(kernel[r], fractionBits);
+          weightSum = weightSum + absoluteSum(kernelFixed[r]);
+        }
+        if (!fitsInInt(weightSum, fractionBits)) {
+          kernelFixed = null;
+        }
+      }
+      directCost = this.taps * (kernelFixed != null ? FIXED_POINT_ENTRY_COST : 1);
+    }
+
+    if (columnFixed != null) {
+      this.directEngine = Engine.FIXED_POINT_SEPARABLE;
+    } else if (factors != null) {
+      this.directEngine = Engine.SEPARABLE;
+    } else if (kernelFixed != null) {
+      this.directEngine = Engine.FIXED_POINT_DIRECT;
+    } else {
+      this.directEngine = Engine.DIRECT;
+    }
+    this.directCost = directCost;
+    // The fixed point engines give exactly the result of the sums, which the transform only
+    // matches up to rounding, so only floating point kernels are worth handing to it
+    boolean exact = this.directEngine == Engine.FIXED_POINT_SEPARABLE
+            || this.directEngine == Engine.FIXED_POINT_DIRECT;
+    this.tileSize = exact ? 0
+            : FftConvolution.chooseTileSize(this.height, this.width, directCost);
+    this.engine = this.tileSize > 0 ? Engine.FFT : this.directEngine;
+    this.column = factors == null ? null : factors[0];
+    this.row = factors == null ? null : factors[1];
+    this.fixedColumn = this.directEngine == Engine.FIXED_POINT_SEPARABLE ? columnFixed : null;
+    this.fixedRow = this.directEngine == Engine.FIXED_POINT_SEPARABLE ? rowFixed : null;
+    this.fixedWeights = this.directEngine == Engine.FIXED_POINT_DIRECT ? kernelFixed : null;
+    this.bits = fractionBits;
+    this.cost = PASS_COST + (this.engine == Engine.FFT
+            ? FftConvolution.costPerPixel(this.height, this.width, this.tileSize)
+            : 3 * directCost);
+  }
+
+  /**
+   * Returns the kernel that has the same effect as applying two kernels one after the other,
+   * without rounding or clamping in between. Its weights are every product of a weight of the
+   * first kernel with a weight of the second, added up by where they land, so kernels of binary
+   * fractions compose exactly. The composed kernel is padded with zeros where needed to keep its
+   * center at (size - 1) / 2.
+   *
+   * @param first  the kernel applied first
+   * @param second the kernel applied second
+   * @return the compiled composed kernel
+   */
+  static CompiledKernel compose(CompiledKernel first, CompiledKernel second) {
+    // Offsets of the composed kernel from its center run from -before to after in each direction
+    int rowsBefore = (first.height - 1) / 2 + (second.height - 1) / 2;
+    int rowsAfter = first.height + second.height - 2 - rowsBefore;
+    int columnsBefore = (first.width - 1) / 2 + (second.width - 1) / 2;
+    int columnsAfter = first.width + second.width - 2 - columnsBefore;
+    int rowReach = Math.max(rowsBefore, rowsAfter);
+    int columnReach = Math.max(columnsBefore, columnsAfter);
+    int rowOffset = rowReach - rowsBefore;
+    int columnOffset = columnReach - columnsBefore;
+
+    double[][] composed = new double[2 * rowReach + 1][2 * columnReach + 1];
+    for (int r1 = 0; r1 < first.height; r1++) {
+      for (int c1 = 0; c1 < first.width; c1++) {
+        double weight = first.weights[r1][c1];
+        if (weight == 0) {
+          continue;
+        }
+        for (int r2 = 0; r2 < second.height; r2++) {
+          double[] composedRow = composed[rowOffset + r1 + r2];
+          for (int c2 = 0; c2 < second.width; c2++) {
+            composedRow[columnOffset + c1 + c2] += weight * second.weights[r2][c2];
+          }
+        }
+      }
+    }
+    return compile(composed);
+  }
+
+  /**
+   * Returns whether the kernel only moves pixels, having a single weight of 1. Its results are
+   * always whole channel values in range, so nothing is lost to rounding or clamping.
+   *
+   * @return true if the kernel is a shift of the image
+   */
+  boolean isShift() {
+    if (this.taps != 1) {
+      return false;
+    }
+    for (double[] kernelRow : this.weights) {
+      for (double weight : kernelRow) {
+        if (weight != 0) {
+          return weight == 1;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether the kernel leaves the image unchanged, having a single weight of 1 at its
+   * center.
+   *
+   * @return true if the kernel is the identity
+   */
+  boolean isIdentity() {
+    return isShift() && this.weights[(this.height - 1) / 2][(this.width - 1) / 2] == 1;
+  }
+
+  /**
+   * Returns the engine that filters an image of the given height most cheaply. The transform
+   * always works on whole strips of tiles, so on an image not much taller than a strip the rows
+   * it works out beyond the image can make the direct engine cheaper. The choice only depends on
+   * the kernel and the image, never on the number of threads, so the result is the same for any
+   * number of threads.
+   *
+   * @param imageHeight the number of rows of the image to filter
+   * @return the engine to use for the image
+   */
+  Engine engineFor(int imageHeight) {
+    if (this.engine != Engine.FFT) {
+      return this.engine;
+    }
+    int validRows = this.tileSize - this.height + 1;
+    int strips = (imageHeight + validRows - 1) / validRows;
+    // Cost of one column of the image, every strip costing a full tile
+    double transformCost = FftConvolution.costPerPixel(this.height, this.width, this.tileSize)
+            * validRows * strips;
+    double directCost = 3 * this.directCost * imageHeight;
+    return transformCost < directCost ? Engine.FFT : this.directEngine;
+  }
+
+  /**
+   * Returns a summary of what the analysis found.
+   *
+   * @return a summary of the compiled kernel
+   */
+  @Override
+  public String toString() {
+    return String.format("%dx%d kernel, %d taps, engine: %s", this.width, this.height, this.taps,
+            this.engine.name().toLowerCase());
+  }
+
+  /**
+   * Finds the fewest fraction bits that make every weight an exact integer once scaled by two to
+   * the power of the bits. Weights made of binary fractions such as 1/16 or 1/8 can then be
+   * applied with integer arithmetic.
+   *
+   * @param weights the weights to scale
+   * @return the number of fraction bits, or -1 if the weights are not all binary fractions with
+   *         at most MAX_FRACTION_BITS bits
+   */
+  static int fractionBits(double[] weights) {
+    for (int bits = 0; bits <= MAX_FRACTION_BITS; bits++) {
+      double scale = 1 << bits;
+      boolean exact = true;
+      for (double weight : weights) {
+        double scaled = weight * scale;
+        if (scaled != Math.rint(scaled) || Math.abs(scaled) > Integer.MAX_VALUE) {
+          exact = false;
+          break;
+        }
+      }
+      if (exact) {
+        return bits;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Scales weights to integers with the given number of fraction bits. Only exact for weights
+   * {@link #fractionBits(double[])} accepted with at most that many bits.
+   *
+   * @param weights the weights to scale
+   * @param bits    the number of fraction bits
+   * @return the weights times two to the power of the bits
+   */
+  static int[] toFixedPoint(double[] weights, int bits) {
+    int[] scaled = new int[weights.length];
+    for (int i = 0; i < weights.length; i++) {
+      scaled[i] = (int) (weights[i] * (1 << bits));
+    }
+    return scaled;
+  }
+
+  /**
+   * Adds up the magnitudes of integer weights.
+   *
+   * @param weights the weights to add up
+   * @return the sum of the absolute values of the weights
+   */
+  static long absoluteSum(int[] weights) {
+    long sum = 0;
+    for (int weight : weights) {
+      sum = sum + Math.abs((long) weight);
+    }
+    return sum;
+  }
+
+  /**
+   * Checks that a fixed point sum of channel values can't overflow an int. The sum is at most the
+   * largest channel value times the sum of the weight magnitudes, plus the rounding offset.
+   *
+   * @param weightSum the sum of the magnitudes of the integer weights
+   * @param bits      the number of fraction bits of the weights
+   * @return true if every sum and its rounding fit in an int
+   */
+  static boolean fitsInInt(long weightSum, int bits) {
+    return weightSum <= Integer.MAX_VALUE / MAX_CHANNEL
+            && weightSum * MAX_CHANNEL + (1L << bits) <= Integer.MAX_VALUE;
+  }
+
+  /**
+   * Private method for counting the weights that are not zero.
+   *
+   * @param weights the weights to count
+   * @return the number of weights that are not zero
+   */
+  private static int nonZero(double[] weights) {
+    int count = 0;
+    for (double weight : weights) {
+      if (weight != 0) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Private method for splitting a kernel into a column and a row whose outer product is the
+   * kernel, which is possible when the kernel has rank 1.
+   *
+   * @param kernel the filter kernel to split
+   * @return the column and the row, or null if the kernel is not separable
+   */
+  private static double[][] separate(double[][] kernel) {
+    int height = kernel.length;
+    int width = kernel[0].length;
+
+    // Pivot on the largest entry, every other row must then be a multiple of the pivot row
+    int pivotR = 0;
+    int pivotC = 0;
+    for (int r = 0; r < height; r++) {
+      for (int c = 0; c < width; c++) {
+        if (Math.abs(kernel[r][c]) > Math.abs(kernel[pivotR][pivotC])) {
+          pivotR = r;
+          pivotC = c;
+        }
+      }
+    }
+    double pivot = kernel[pivotR][pivotC];
+    if (pivot == 0) {
+      return null;
+    }
+
+    // The pivot is split evenly between the factors, so kernels like the binomial ones, whose
+    // factors are exact in binary, are split into exactly those factors
+    double columnScale = Math.sqrt(Math.abs(pivot));
+    double rowScale = pivot / columnScale;
+    double[] column = new double[height];
+    double[] row = new double[width];
+    for (int r = 0; r < height; r++) {
+      column[r] = kernel[r][pivotC] / columnScale;
+    }
+    for (int c = 0; c < width; c++) {
+      row[c] = kernel[pivotR][c] / rowScale;
+    }
+    double tolerance = Math.abs(pivot) * SEPARABLE_TOLERANCE;
+    for (int r = 0; r < height; r++) {
+      for (int c = 0; c < width; c++) {
+        if (Math.abs(kernel[r][c] - column[r] * row[c]) > tolerance) {
+          return null;
+        }
+      }
+    }
+    return new double[][] {column, row};
+  }
+}
@@ -1,21 +1,89 @@
 package images;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The model class acting as a facade for the entire model.
+ *
+ * <p>An image loaded with subsampling is a preview. Every edit made to a preview is recorded, and
+ * saving it decodes the image at full resolution, replays the edits and keeps the full resolution
+ * result. Edits whose parameters are in pixels, such as blur, are replayed with the same
+ * parameters, so the saved image can look slightly different from the preview.
+ *
+ * <p>Blur, sharpen and custom kernels are deferred as set by the fusion mode, so that consecutive
+ * ones can be composed into one kernel and applied in a single pass. Color transformations and
+ * histogram equalizations are likewise deferred and chained, and a chain is applied in one pass
+ * with the same result as its steps one at a time. Deferred filters are applied before anything
+ * else reads or changes the image.
+ *
+ * <p>The histograms of the image are kept once counted until the image changes, and are carried
+ * through histogram equalizations without counting again.
  */
 public class ConcreteImageModel implements ImageModel {
 
+  // Images with at least this many pixels are stored as byte planes, about 16 megapixels
+  private static final long DEFAULT_PLANAR_THRESHOLD = 1L << 24;
+
   private RgbArray24Bit rgbData;
   private int width;
   private int height;
+  private long planarThreshold;
+  private final RgbBufferPool bufferPool;
+  private SharedRgbBuffer exportedView;
+  private PreviewSource preview;
+  private EdgeMode edgeMode;
+  private FusionMode fusionMode;
+  private CompiledKernel pendingKernel;
+  private EdgeMode pendingEdgeMode;
+  private PointChain pendingPoints;
+  private int[][] histograms;
 
   /**
    * Constructor for ConcreteImageModel.
    */
   public ConcreteImageModel() {
+    this(DEFAULT_PLANAR_THRESHOLD);
+  }
+
+  /**
+   * Constructor for ConcreteImageModel that chooses when images are stored as three byte planes
+   * instead of packed integers. Planar storage uses less memory and suits very large images.
+   *
+   * @param planarThreshold the number of pixels from which loaded images are stored as planes
+   * @throws IllegalArgumentException if the threshold is not positive
+   */
+  public ConcreteImageModel(long planarThreshold) throws IllegalArgumentException {
+    this(planarThreshold, Runtime.getRuntime().maxMemory() / 4);
+  }
+
+  /**
+   * Constructor for ConcreteImageModel that also sets how much memory the model keeps in released
+   * image buffers for reuse by later operations.
+   *
+   * @param planarThreshold the number of pixels from which loaded images are stored as planes
+   * @param maxPooledBytes  the most bytes of released buffers kept for reuse
+   * @throws IllegalArgumentException if the threshold is not positive or the pool size negative
+   */
+  public ConcreteImageModel(long planarThreshold, long maxPooledBytes)
+          throws IllegalArgumentException {
+    if (planarThreshold <= 0) {
+      throw new IllegalArgumentException("Planar threshold must be positive.");
+    }
     this.rgbData = null;
+    this.planarThreshold = planarThreshold;
+    this.bufferPool = new RgbBufferPool(maxPooledBytes);
+    this.exportedView = null;
+    this.preview = null;
+    this.edgeMode = EdgeMode.ZERO;
+    this.fusionMode = FusionMode.EXACT;
+    this.pendingKernel = null;
+    this.pendingEdgeMode = null;
+    this.pendingPoints = null;
+    this.histograms = null;
   }
 
   /**
@@ -27,7 +95,31 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void loadImage(String filename) throws IllegalArgumentException {
-    this.rgbData = new RgbArray24Bit(ImageUtilities.readImage(filename));
+    loadBuffer(ImageUtilities.readImage(filename, this.planarThreshold));
+    this.preview = null;
+  }
+
+  /**
+   * Load part of an image into the image model, keeping only every few pixels. With a
+   * subsampling above 1 the image is a preview that is decoded at full resolution when saved.
+   *
+   * @param filename    the name of the file containing the image.
+   * @param startX      the column of the first pixel to load
+   * @param startY      the row of the first pixel to load
+   * @param width       the width of the region to load in pixels
+   * @param height      the height of the region to load in pixels, parts of the region outside
+   *                    the image are ignored
+   * @param subsampling the distance between loaded pixels in both directions, 1 to load all
+   * @throws IllegalArgumentException if the filename is invalid, the region is outside the image,
+   *                                  the subsampling is not positive or if something goes wrong
+   *                                  loading the image
+   */
+  @Override
+  public void loadImage(String filename, int startX, int startY, int width, int height,
+                        int subsampling) throws IllegalArgumentException {
+    Rectangle region = new Rectangle(startX, startY, width, height);
+    loadBuffer(ImageUtilities.readImage(filename, region, subsampling, this.planarThreshold));
+    this.preview = subsampling > 1 ? new PreviewSource(filename, region, subsampling) : null;
   }
 
   /**
@@ -40,7 +132,18 @@ public class ConcreteImageModel implements ImageModel {
   @Override
   public void saveImage(String filename) throws IllegalArgumentException, IllegalStateException {
     checkForImage("saving");
-    ImageUtilities.writeImage(this.rgbData.toArray(), filename);
+    applyPendingFilters();
+    if (this.preview != null) {
+      RgbArray24Bit fullData = new RgbArray24Bit(ImageUtilities.readImage(this.preview.filename,
+              this.preview.region, 1, this.planarThreshold), this.bufferPool);
+      for (Consumer<RgbArray24Bit> edit : this.preview.edits) {
+        edit.accept(fullData);
+      }
+      this.rgbData.updateBuffer(fullData.getBuffer());
+      this.preview = null;
+      this.histograms = null;
+    }
+    ImageUtilities.writeImage(this.rgbData.getBuffer(), filename);
   }
 
   /**
@@ -48,8 +151,7 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyBlur() throws IllegalStateException {
-    checkForImage("applying blur");
-    this.rgbData.updateArray(ArrayFilter.applyBlur(this.rgbData.toArray()));
+    applyLinearFilter("applying blur", ArrayFilter.blurKernel);
   }
 
   /**
@@ -57,9 +159,62 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applySharpen() throws IllegalStateException {
-    checkForImage("applying sharpen");
-    this.rgbData.updateArray(
-            ArrayFilter.applySharpen(this.rgbData.toArray()));
+    applyLinearFilter("applying sharpen", ArrayFilter.sharpenKernel);
+  }
+
+  /**
+   * Blurs the image by averaging the square of pixels around every pixel.
+   *
+   * @param radius the number of pixels the square reaches out from its center
+   * @throws IllegalArgumentException if the radius is negative or more than 65536
+   */
+  @Override
+  public void applyBoxBlur(int radius) throws IllegalArgumentException, IllegalStateException {
+    EdgeMode mode = this.edgeMode;
+    edit("applying box blur", data -> data.applyInPlace((source, destination) ->
+            ArrayFilter.applyBoxBlur(source, destination, radius, mode)));
+  }
+
+  /**
+   * Blurs the image with a gaussian blur, approximated by three box blurs.
+   *
+   * @param sigma the standard deviation of the gaussian in pixels
+   * @throws IllegalArgumentException if sigma is negative, not a number or too large
+   */
+  @Override
+  public void applyGaussianBlur(double sigma)
+          throws IllegalArgumentException, IllegalStateException {
+    EdgeMode mode = this.edgeMode;
+    edit("applying gaussian blur", data -> data.applyInPlace((source, destination) ->
+            ArrayFilter.applyGaussianBlur(source, destination, sigma, mode)));
+  }
+
+  /**
+   * Filters the image with a given kernel. The kernel is compiled before the edit is recorded, so
+   * replaying the edit on a full resolution image uses the same analysis, and it may be composed
+   * with the filters next to it as the fusion mode allows.
+   *
+   * @param kernel the filter kernel, every row the same length
+   * @throws IllegalArgumentException if the kernel is empty, its rows differ in length or a
+   *                                  weight is not a finite number
+   */
+  @Override
+  public void applyKernel(double[][] kernel)
+          throws IllegalArgumentException, IllegalStateException {
+    applyLinearFilter("applying kernel", CompiledKernel.compile(kernel));
+  }
+
+  /**
+   * Applies a given color transformation matrix to the image.
+   *
+   * @param matrix the 3x3 color transformation matrix
+   * @throws IllegalArgumentException if the matrix is not 3x3 or a weight is not a finite number
+   */
+  @Override
+  public void applyColorMatrix(double[][] matrix)
+          throws IllegalArgumentException, IllegalStateException {
+    applyPointOperation("applying color matrix",
+            PointChain.of(CompiledColorMatrix.compile(matrix)));
   }
 
   /**
@@ -67,10 +222,7 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyGrayscale() throws IllegalStateException {
-    checkForImage("applying grayscale");
-    this.rgbData.updateArray(
-            ArrayFilter.applyGreyscale(this.rgbData.toArray())
-    );
+    applyPointOperation("applying grayscale", PointChain.of(ArrayFilter.greyscaleMatrix));
   }
 
   /**
@@ -78,10 +230,7 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applySepia() throws IllegalStateException {
-    checkForImage("applying sepia");
-    this.rgbData.updateArray(
-            ArrayFilter.applySepia(this.rgbData.toArray())
-    );
+    applyPointOperation("applying sepia", PointChain.of(ArrayFilter.sepiaMatrix));
   }
 
   /**
@@ -89,10 +238,7 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyDither() throws IllegalStateException {
-    checkForImage("applying dithering");
-    this.rgbData.updateArray(
-            ArrayFilter.applyFloydSteinbergDither(this.rgbData.toArray())
-    );
+    edit("applying dithering", data -> data.applyInPlace(ArrayFilter::applyFloydSteinbergDither));
   }
 
   /**
@@ -103,10 +249,8 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyMosaic(int seeds) throws IllegalArgumentException, IllegalStateException {
-    checkForImage("applying mosaic");
-    this.rgbData.updateArray(
-            ArrayFilter.applyMosaic(this.rgbData.toArray(), seeds)
-    );
+    edit("applying mosaic", data -> data.applyInto((source, destination) ->
+            ArrayFilter.applyMosaic(source, seeds, destination)));
   }
 
   /**
@@ -114,10 +258,20 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyEdgeDetection() {
-    checkForImage("applying edge detection");
-    this.rgbData.updateArray(
-            ArrayFilter.applySobelEdgeDetection(this.rgbData.toArray())
-    );
+    applyEdgeDetection(false);
+  }
+
+  /**
+   * Produces a grayscale image where edges (areas of high contrast) are highlighted, optionally
+   * adding the absolute gradients instead of taking the length of the gradient, which is faster.
+   *
+   * @param fastMagnitude whether to use the faster approximate gradient magnitude
+   */
+  @Override
+  public void applyEdgeDetection(boolean fastMagnitude) {
+    EdgeMode mode = this.edgeMode;
+    edit("applying edge detection", data -> data.applyInto((source, destination) ->
+            ArrayFilter.applySobelEdgeDetection(source, destination, mode, fastMagnitude)));
   }
 
   /**
@@ -131,9 +285,20 @@ public class ConcreteImageModel implements ImageModel {
   @Override
   public void crop(int startIndexX, int startIndexY, int endIndexX, int endIndexY) {
     checkForImage("cropping");
-    this.rgbData.updateArray(
-            ArrayFilter.crop(this.rgbData.toArray(), startIndexX, startIndexY, endIndexX, endIndexY)
+    applyPendingFilters();
+    this.histograms = null;
+    this.rgbData.updateBuffer(
+            ArrayFilter.crop(this.rgbData.getBuffer(), startIndexX, startIndexY, endIndexX,
+                    endIndexY)
     );
+    if (this.preview != null) {
+      // Replayed on the full resolution image, where every preview pixel covers a block of pixels
+      int scale = this.preview.subsampling;
+      this.preview.edits.add(data -> data.updateBuffer(ArrayFilter.crop(data.getBuffer(),
+              startIndexX * scale, startIndexY * scale,
+              Math.min(endIndexX * scale, data.getBuffer().getWidth()),
+              Math.min(endIndexY * scale, data.getBuffer().getHeight()))));
+    }
   }
 
   /**
@@ -148,8 +313,10 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public BufferedImage cropPreview(int startIndexX, int startIndexY, int endIndexX, int endIndexY) {
-    return ImageUtilities.arrayToBufferedImage(
-            ArrayFilter.crop(this.rgbData.toArray(), startIndexX, startIndexY, endIndexX, endIndexY)
+    applyPendingFilters();
+    return ImageUtilities.wrapAsBufferedImage(
+            ArrayFilter.crop(this.rgbData.getBuffer(), startIndexX, startIndexY, endIndexX,
+                    endIndexY)
     );
   }
 
@@ -158,15 +325,131 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public void applyHistogramEqualization() {
-    checkForImage("applying histogram equalization");
-    this.rgbData.updateArray(
-            ArrayFilter.histogramEqualization(this.rgbData.toArray())
-    );
+    applyPointOperation("applying histogram equalization", PointChain.equalization());
   }
 
+  /**
+   * Equalizes the histogram of each channel in every tile of a grid, limiting how much the
+   * contrast is stretched. A preview keeps the same grid, so its tiles cover the same parts of
+   * the image.
+   *
+   * @param tilesX    the number of tiles across the image
+   * @param tilesY    the number of tiles down the image
+   * @param clipLimit the most pixels a channel value may have in a tile, as a multiple of the
+   *                  average count of a value
+   * @throws IllegalArgumentException if a number of tiles is not positive or the clip limit is
+   *                                  not a positive number
+   */
+  @Override
+  public void applyClahe(int tilesX, int tilesY, double clipLimit)
+          throws IllegalArgumentException, IllegalStateException {
+    edit("applying clahe", data -> data.applyInPlace((source, destination) ->
+            ArrayFilter.applyClahe(source, destination, tilesX, tilesY, clipLimit)));
+  }
+
+  /**
+   * Sets how blur, sharpen and edge detection treat the pixels beyond the edges of the image.
+   *
+   * @param edgeMode how pixels outside the image are treated
+   * @throws IllegalArgumentException if the edge mode is null
+   */
+  @Override
+  public void setEdgeMode(EdgeMode edgeMode) throws IllegalArgumentException {
+    if (edgeMode == null) {
+      throw new IllegalArgumentException("Edge mode can't be null.");
+    }
+    this.edgeMode = edgeMode;
+  }
+
+  /**
+   * Sets whether blur, sharpen and custom kernels are deferred and composed with the filters next
+   * to them. Filters deferred so far are applied first.
+   *
+   * @param fusionMode when consecutive filters are composed
+   * @throws IllegalArgumentException if the fusion mode is null
+   */
+  @Override
+  public void setFusionMode(FusionMode fusionMode) throws IllegalArgumentException {
+    if (fusionMode == null) {
+      throw new IllegalArgumentException("Fusion mode can't be null.");
+    }
+    if (this.rgbData != null) {
+      applyPendingFilters();
+    }
+    this.fusionMode = fusionMode;
+  }
+
+  /**
+   * Sets how many threads image operations may use. Results are the same for any number of
+   * threads. The setting is shared by every model.
+   *
+   * @param threads the number of threads, 1 to run operations on the calling thread only
+   * @throws IllegalArgumentException if the number of threads is less than 1
+   */
+  @Override
+  public void setParallelism(int threads) throws IllegalArgumentException {
+    ArrayFilter.setParallelism(threads);
+  }
+
+  /**
+   * Returns the image stored in the model as a BufferedImage that shares the model's pixels, so no
+   * conversion takes place. The pixels seen through the image stay unchanged until the next call
+   * to this method, after which they may be reused by later operations.
+   *
+   * @return the image stored in the model as a BufferedImage
+   */
   @Override
   public BufferedImage getBufferedImage() {
-    return ImageUtilities.arrayToBufferedImage(this.rgbData.toArray());
+    checkForImage("getting the image");
+    applyPendingFilters();
+    SharedRgbBuffer previousView = this.exportedView;
+    this.exportedView = this.rgbData.share();
+    if (previousView != null) {
+      this.rgbData.release(previousView);
+    }
+    return ImageUtilities.wrapAsBufferedImage(this.exportedView.getBuffer());
+  }
+
+  /**
+   * Returns a copy of the image stored in the model as a BufferedImage. The copy is detached from
+   * the model and never changes.
+   *
+   * @return a copy of the image stored in the model as a BufferedImage
+   */
+  @Override
+  public BufferedImage getBufferedImageSnapshot() {
+    checkForImage("getting the image");
+    applyPendingFilters();
+    return ImageUtilities.bufferToBufferedImage(this.rgbData.getBuffer());
+  }
+
+  /**
+   * Returns how many pixels of the image have each value in each channel. The histograms are
+   * counted once and kept until the image changes.
+   *
+   * @return the histogram of the red, green and blue channel, each of 256 counts
+   */
+  @Override
+  public int[][] getHistograms() {
+    checkForImage("getting the histograms");
+    applyPendingFilters();
+    if (this.histograms == null) {
+      this.histograms = ArrayFilter.channelHistograms(this.rgbData.getBuffer());
+    }
+    int[][] copy = new int[3][];
+    for (int z = 0; z < 3; z++) {
+      copy[z] = this.histograms[z].clone();
+    }
+    return copy;
+  }
+
+  /**
+   * Returns the pool of released image buffers, which reports its hits, misses and retained bytes.
+   *
+   * @return the pool of released image buffers
+   */
+  public RgbBufferPool getBufferPool() {
+    return this.bufferPool;
   }
 
   /**
@@ -176,13 +459,193 @@ public class ConcreteImageModel implements ImageModel {
    */
   @Override
   public String toString() {
+    if (this.rgbData != null) {
+      applyPendingFilters();
+    }
     return this.rgbData.toString();
   }
 
+  /**
+   * Makes the given buffer the image of the model.
+   *
+   * @param image the newly loaded image
+   */
+  private void loadBuffer(RgbBuffer image) {
+    this.pendingKernel = null;
+    this.pendingPoints = null;
+    this.histograms = null;
+    if (this.rgbData == null) {
+      this.rgbData = new RgbArray24Bit(image, this.bufferPool);
+    } else {
+      this.rgbData.updateBuffer(image);
+    }
+  }
+
+  /**
+   * Applies an edit to the image of the model, recording it when the image is a preview.
+   *
+   * @param action    what the edit does, for the error message when no image is loaded
+   * @param operation the edit to apply
+   */
+  private void edit(String action, Consumer<RgbArray24Bit> operation) {
+    checkForImage(action);
+    applyPendingFilters();
+    record(operation);
+  }
+
+  /**
+   * Applies an edit to the image of the model and records it when the image is a preview.
+   *
+   * @param operation the edit to apply
+   */
+  private void record(Consumer<RgbArray24Bit> operation) {
+    record(operation, operation);
+  }
+
+  /**
+   * Applies an edit to the image of the model and records how to replay it when the image is a
+   * preview, for edits that use what the model knows about the preview image. The histograms
+   * kept are dropped since the image changes.
+   *
+   * @param operation the edit to apply
+   * @param replay    the same edit for the full resolution image
+   */
+  private void record(Consumer<RgbArray24Bit> operation, Consumer<RgbArray24Bit> replay) {
+    this.histograms = null;
+    operation.accept(this.rgbData);
+    if (this.preview != null) {
+      this.preview.edits.add(replay);
+    }
+  }
+
+  /**
+   * Applies a filter kernel to the image, or defers it as the fusion mode says. A deferred filter
+   * is composed with the next one when the fusion mode allows and the composed kernel is no more
+   * costly than the two applied one after the other, otherwise the deferred one is applied first.
+   *
+   * @param action what the filter does, for the error message when no image is loaded
+   * @param kernel the compiled kernel of the filter
+   */
+  private void applyLinearFilter(String action, CompiledKernel kernel) {
+    checkForImage(action);
+    EdgeMode mode = this.edgeMode;
+    if (this.pendingKernel != null && this.pendingEdgeMode == mode
+            && canCompose(this.pendingKernel, kernel, mode)) {
+      CompiledKernel composed = CompiledKernel.compose(this.pendingKernel, kernel);
+      if (composed.cost <= this.pendingKernel.cost + kernel.cost) {
+        this.pendingKernel = composed;
+        return;
+      }
+    }
+    applyPendingFilters();
+    this.pendingKernel = kernel;
+    this.pendingEdgeMode = mode;
+    if (this.fusionMode == FusionMode.OFF) {
+      applyPendingFilters();
+    }
+  }
+
+  /**
+   * Applies a color transformation or histogram equalization to the image, or adds it to the
+   * chain of those deferred unless the fusion mode is off. A deferred filter kernel is applied
+   * first.
+   *
+   * @param action    what the operation does, for the error message when no image is loaded
+   * @param operation the chain of the single operation
+   */
+  private void applyPointOperation(String action, PointChain operation) {
+    checkForImage(action);
+    if (this.pendingKernel != null) {
+      applyPendingFilters();
+    }
+    this.pendingPoints = this.pendingPoints == null
+            ? operation : this.pendingPoints.then(operation);
+    if (this.fusionMode == FusionMode.OFF) {
+      applyPendingFilters();
+    }
+  }
+
+  /**
+   * Returns whether two consecutive filters may be composed under the fusion mode. Exact fusion
+   * needs one of them to only move pixels, since then nothing is lost to rounding or clamping in
+   * between. A shift commutes with any filter when edges wrap around, and the identity always
+   * does.
+   *
+   * @param first  the filter applied first
+   * @param second the filter applied second
+   * @param mode   how both filters treat pixels outside the image
+   * @return true if the filters can be composed into one
+   */
+  private boolean canCompose(CompiledKernel first, CompiledKernel second, EdgeMode mode) {
+    switch (this.fusionMode) {
+      case FUSED:
+        return true;
+      case EXACT:
+        return first.isIdentity() || second.isIdentity()
+                || (mode == EdgeMode.WRAP && (first.isShift() || second.isShift()));
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Applies the deferred filters to the image, if there are any. A composed kernel or a chain of
+   * point operations is recorded as one edit, and a kernel is dropped if it is the identity. At
+   * most one of the two is deferred at a time.
+   */
+  private void applyPendingFilters() {
+    if (this.pendingPoints != null) {
+      PointChain chain = this.pendingPoints;
+      int[][] counted = this.histograms;
+      this.pendingPoints = null;
+      record(data -> data.applyInPlace((source, destination) ->
+                      ArrayFilter.applyPointChain(source, destination, chain, counted)),
+              data -> data.applyInPlace((source, destination) ->
+                      ArrayFilter.applyPointChain(source, destination, chain, null)));
+
+      // Equalizing alone leaves histograms that can be worked out from those before
+      if (counted != null && !chain.steps.stream().anyMatch(step -> step != null)) {
+        int totalPixels = this.rgbData.getBuffer().getWidth()
+                * this.rgbData.getBuffer().getHeight();
+        int[][] equalized = counted;
+        for (int i = 0; i < chain.steps.size(); i++) {
+          equalized = ArrayFilter.equalizedHistograms(equalized, totalPixels);
+        }
+        this.histograms = equalized;
+      }
+    }
+    if (this.pendingKernel == null) {
+      return;
+    }
+    CompiledKernel kernel = this.pendingKernel;
+    EdgeMode mode = this.pendingEdgeMode;
+    this.pendingKernel = null;
+    if (!kernel.isIdentity()) {
+      record(data -> data.applyInto((source, destination) ->
+              ArrayFilter.applyKernel(source, destination, kernel, mode)));
+    }
+  }
+
   private void checkForImage(String s) {
     if (this.rgbData == null) {
       throw new IllegalStateException(String.format("Image must be loaded before %s.", s));
     }
   }
 
+  /**
+   * Where a preview was loaded from and the edits made to it since.
+   */
+  private static final class PreviewSource {
+    private final String filename;
+    private final Rectangle region;
+    private final int subsampling;
+    private final List<Consumer<RgbArray24Bit>> edits;
+
+    private PreviewSource(String filename, Rectangle region, int subsampling) {
+      this.filename = filename;
+      this.region = region;
+      this.subsampling = subsampling;
+      this.edits = new ArrayList<>();
+    }
+  }
 }
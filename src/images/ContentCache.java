@@ -0,0 +1,109 @@
+package images;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A cache of objects compiled from a matrix of numbers, such as filter kernels, keyed by the
+ * contents of the matrix. A matrix given again with the same numbers gets the object compiled the
+ * first time, however it was created. The cache keeps a fixed number of entries, evicting the
+ * least recently used first.
+ *
+ * @param <V> the type of the compiled objects
+ */
+final class ContentCache<V> {
+
+  private final int maxEntries;
+  private final Map<ContentKey, V> entries;
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructor for a cache keeping at most the given number of entries.
+   *
+   * @param maxEntries the most compiled objects kept at once, at least 1
+   */
+  ContentCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.hits = 0;
+    this.misses = 0;
+  }
+
+  /**
+   * Returns the object compiled from a matrix with the same contents, compiling and keeping it if
+   * there is none. The matrix is copied, so changing it afterwards does not affect the cache.
+   *
+   * @param contents the matrix to look up, rows may have different lengths
+   * @param compiler compiles a copy of the matrix, may throw to reject it
+   * @return the compiled object
+   */
+  synchronized V get(double[][] contents, Function<double[][], V> compiler) {
+    ContentKey key = new ContentKey(contents);
+    V value = this.entries.get(key);
+    if (value != null) {
+      this.hits++;
+      return value;
+    }
+    this.misses++;
+    value = compiler.apply(key.contents);
+    this.entries.put(key, value);
+    if (this.entries.size() > this.maxEntries) {
+      this.entries.remove(this.entries.keySet().iterator().next());
+    }
+    return value;
+  }
+
+  /**
+   * Returns the number of lookups that found an object compiled earlier.
+   *
+   * @return the number of cache hits
+   */
+  synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Returns the number of lookups that had to compile a new object.
+   *
+   * @return the number of cache misses
+   */
+  synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Key holding a copy of a matrix, equal to keys with the same numbers in the same places.
+   */
+  private static final class ContentKey {
+    private final double[][] contents;
+    private final int hash;
+
+    private ContentKey(double[][] contents) {
+      this.contents = new double[contents.length][];
+      for (int r = 0; r < contents.length; r++) {
+        this.contents[r] = contents[r] == null ? null : contents[r].clone();
+      }
+      this.hash = Arrays.deepHashCode(this.contents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ContentKey)) {
+        return false;
+      }
+      ContentKey other = (ContentKey) o;
+      return this.hash == other.hash && Arrays.deepEquals(this.contents, other.contents);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+}
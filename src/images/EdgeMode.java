@@ -0,0 +1,57 @@
+package images;
+
+/**
+ * How filters that look at neighbouring pixels treat the pixels beyond the edges of the image.
+ */
+public enum EdgeMode {
+
+  /**
+   * Pixels outside the image count as black, which darkens the border of blurred images.
+   */
+  ZERO,
+
+  /**
+   * Pixels outside the image repeat the nearest edge pixel.
+   */
+  CLAMP,
+
+  /**
+   * Pixels outside the image mirror the image around its edge pixels, so the pixel left of the
+   * first column is the second column.
+   */
+  MIRROR,
+
+  /**
+   * Pixels outside the image wrap around to the opposite side, as if the image were tiled.
+   */
+  WRAP;
+
+  /**
+   * Returns the index of the pixel inside the image that stands in for an index along a row or
+   * column, which may lie outside the image.
+   *
+   * @param index the index along the row or column, may be negative or past the end
+   * @param size  the number of pixels in the row or column, at least 1
+   * @return the index of the pixel to use, or -1 if the pixel counts as black
+   */
+  public int sourceIndex(int index, int size) {
+    if (index >= 0 && index < size) {
+      return index;
+    }
+    switch (this) {
+      case CLAMP:
+        return index < 0 ? 0 : size - 1;
+      case MIRROR:
+        if (size == 1) {
+          return 0;
+        }
+        int period = 2 * (size - 1);
+        int folded = Math.floorMod(index, period);
+        return folded < size ? folded : period - folded;
+      case WRAP:
+        return Math.floorMod(index, size);
+      default:
+        return -1;
+    }
+  }
+}
@@ -0,0 +1,361 @@
+package images;
+
+/**
+ * Applies large filter kernels through the fast Fourier transform, where the cost per pixel grows
+ * with the logarithm of the tile size instead of with the number of kernel entries.
+ *
+ * <p>The image is cut into square tiles that are transformed one at a time, so memory stays
+ * bounded however large the image is. Each tile is read together with the border of pixels the
+ * kernel reaches, including the padding the edge mode stands in for outside the image. The
+ * circular convolution of the tile then equals the filter everywhere except in that border, and
+ * only the inner part is kept (overlap-save). Two channels are transformed at once as the real
+ * and imaginary parts of one complex tile, which works because the kernel is real.
+ *
+ * <p>The result matches applying the kernel directly up to rounding, a pixel whose exact value
+ * lies on a half can round either way.
+ */
+final class FftConvolution {
+
+  // Relative cost of one butterfly of the transform and of one complex multiplication compared
+  // with one floating point multiply and add of direct convolution, as measured
+  private static final double BUTTERFLY_COST = 4.0;
+  private static final double MULTIPLY_COST = 2.0;
+
+  // Tile sizes tried by the cost model, powers of two so a radix-2 transform can be used. Above
+  // the cached size the columns of a tile no longer stay in cache, which the model charges for
+  private static final int MIN_TILE_SIZE = 16;
+  private static final int CACHED_TILE_SIZE = 128;
+  private static final int MAX_TILE_SIZE = 1024;
+
+  // Private constructor
+  private FftConvolution() {
+  }
+
+  /**
+   * Returns the tile size that filters with a kernel of the given size most cheaply through the
+   * transform, if that is cheaper than applying the kernel directly. The cost counts the
+   * transforms of a tile spread over the pixels the tile produces, in floating point multiply and
+   * adds.
+   *
+   * @param kernelHeight the number of rows of the kernel
+   * @param kernelWidth  the number of columns of the kernel
+   * @param directCost   the cost of one channel of one pixel when applied directly, in floating
+   *                     point multiply and adds
+   * @return the tile size to use, or 0 if direct convolution is cheaper
+   */
+  static int chooseTileSize(int kernelHeight, int kernelWidth, double directCost) {
+    int bestSize = 0;
+    double bestCost = 3 * directCost;
+    for (int size = MIN_TILE_SIZE; size <= MAX_TILE_SIZE; size = size * 2) {
+      double cost = costPerPixel(kernelHeight, kernelWidth, size);
+      if (cost < bestCost) {
+        bestCost = cost;
+        bestSize = size;
+      }
+    }
+    return bestSize;
+  }
+
+  /**
+   * Returns the cost of filtering the three channels of one pixel through tiles of the given size,
+   * in floating point multiply and adds.
+   *
+   * @param kernelHeight the number of rows of the kernel
+   * @param kernelWidth  the number of columns of the kernel
+   * @param size         the tile size, a power of two
+   * @return the cost per pixel, or infinity if the kernel does not fit in a tile
+   */
+  static double costPerPixel(int kernelHeight, int kernelWidth, int size) {
+    int validRows = size - kernelHeight + 1;
+    int validColumns = size - kernelWidth + 1;
+    if (validRows < 1 || validColumns < 1) {
+      return Double.POSITIVE_INFINITY;
+    }
+    // Three channels take two complex tiles, each transformed forward and back
+    double points = (double) size * size;
+    double log = Integer.numberOfTrailingZeros(size);
+    double butterflyCost = BUTTERFLY_COST * Math.max(1, size / CACHED_TILE_SIZE);
+    double tileCost = 4 * points * log * butterflyCost + 2 * points * MULTIPLY_COST;
+    return tileCost / ((double) validRows * validColumns);
+  }
+
+  /**
+   * Applies a filter kernel to every channel of an image through the transform. Kernel entries
+   * line up with pixels the same way as when the kernel is applied directly, with the center at
+   * row (height - 1) / 2 and column (width - 1) / 2.
+   *
+   * @param image       the RGB image to be transformed
+   * @param destination buffer of the same size to overwrite, must not be the image itself
+   * @param kernel      the filter kernel, every row the same length
+   * @param edgeMode    how pixels outside the image are treated
+   * @param tileSize    the size of the transformed tiles, a power of two from
+   *                    {@link #chooseTileSize(int, int, double)}
+   * @return the destination buffer holding the transformed image
+   */
+  static RgbBuffer apply(RgbBuffer image, RgbBuffer destination, double[][] kernel,
+                         EdgeMode edgeMode, int tileSize) {
+    int height = image.getHeight();
+    int width = image.getWidth();
+    int kernelHeight = kernel.length;
+    int kernelWidth = kernel[0].length;
+    int rowsAbove = (kernelHeight - 1) / 2;
+    int columnsLeft = (kernelWidth - 1) / 2;
+    int validRows = tileSize - kernelHeight + 1;
+    int validColumns = tileSize - kernelWidth + 1;
+
+    Transform transform = new Transform(tileSize);
+    double[][] spectrum = kernelSpectrum(kernel, transform);
+
+    // Every strip is a row of tiles producing validRows rows of the result, enough work for a
+    // band of its own
+    int strips = (height + validRows - 1) / validRows;
+    RowBands.forEach(strips, RowBands.bandCount(strips, 1), (band, startStrip, endStrip) -> {
+      int[] sourceRow = new int[width];
+      int[][][] paddedRows = new int[3][tileSize][width + kernelWidth - 1];
+      int[][][] resultRows = new int[3][validRows][width];
+      double[] real = new double[tileSize * tileSize];
+      double[] imaginary = new double[tileSize * tileSize];
+
+      for (int strip = startStrip; strip < endStrip; strip++) {
+        int firstRow = strip * validRows;
+        int rows = Math.min(validRows, height - firstRow);
+        for (int z = 0; z < 3; z++) {
+          for (int i = 0; i < tileSize; i++) {
+            ArrayFilter.readPaddedRow(image, z, firstRow - rowsAbove + i, edgeMode, columnsLeft,
+                    sourceRow, paddedRows[z][i]);
+          }
+        }
+
+        for (int firstColumn = 0; firstColumn < width; firstColumn += validColumns) {
+          int columns = Math.min(validColumns, width - firstColumn);
+          // Red and green together, then blue on its own
+          for (int z = 0; z < 3; z += 2) {
+            fillTile(paddedRows[z], z + 1 < 3 ? paddedRows[z + 1] : null, firstColumn,
+                    tileSize, real, imaginary);
+            transform.forward2d(real, imaginary);
+            multiply(real, imaginary, spectrum[0], spectrum[1]);
+            transform.inverse2d(real, imaginary);
+            for (int y = 0; y < rows; y++) {
+              int index = y * tileSize;
+              for (int x = 0; x < columns; x++) {
+                resultRows[z][y][firstColumn + x] = (int) Math.round(real[index + x]);
+                if (z + 1 < 3) {
+                  resultRows[z + 1][y][firstColumn + x] = (int) Math.round(imaginary[index + x]);
+                }
+              }
+            }
+          }
+        }
+
+        for (int z = 0; z < 3; z++) {
+          for (int y = 0; y < rows; y++) {
+            destination.writeChannelRow(z, firstRow + y, resultRows[z][y]);
+          }
+        }
+      }
+    });
+    return destination;
+  }
+
+  /**
+   * Private method for finding the transform of the kernel arranged so that the circular
+   * convolution of a tile with it gives the filter result at the top left of the tile. Entry
+   * (r, c) of the kernel goes to (-r, -c) modulo the tile size.
+   *
+   * @param kernel    the filter kernel
+   * @param transform the transform for the tile size
+   * @return the real and imaginary parts of the transform, scaled for the inverse transform
+   */
+  private static double[][] kernelSpectrum(double[][] kernel, Transform transform) {
+    int size = transform.size;
+    double[] real = new double[size * size];
+    double[] imaginary = new double[size * size];
+    for (int r = 0; r < kernel.length; r++) {
+      for (int c = 0; c < kernel[r].length; c++) {
+        real[((size - r) % size) * size + (size - c) % size] = kernel[r][c];
+      }
+    }
+    transform.forward2d(real, imaginary);
+
+    // The inverse transform is left unscaled, so the kernel carries its factor instead
+    double scale = 1.0 / ((double) size * size);
+    for (int i = 0; i < real.length; i++) {
+      real[i] = real[i] * scale;
+      imaginary[i] = imaginary[i] * scale;
+    }
+    return new double[][] {real, imaginary};
+  }
+
+  /**
+   * Private method for copying a tile of one or two channels out of their padded rows.
+   *
+   * @param realRows      the padded rows of the channel to put in the real part
+   * @param imaginaryRows the padded rows of the channel to put in the imaginary part, or null
+   * @param firstColumn   the column of the image the tile starts at
+   * @param size          the size of the tile
+   * @param real          the real part of the tile to fill
+   * @param imaginary     the imaginary part of the tile to fill
+   */
+  private static void fillTile(int[][] realRows, int[][] imaginaryRows, int firstColumn,
+                               int size, double[] real, double[] imaginary) {
+    int available = Math.min(size, realRows[0].length - firstColumn);
+    for (int y = 0; y < size; y++) {
+      int index = y * size;
+      int[] realRow = realRows[y];
+      for (int x = 0; x < available; x++) {
+        real[index + x] = realRow[firstColumn + x];
+      }
+      // Columns past the padded row only reach results that are thrown away
+      for (int x = available; x < size; x++) {
+        real[index + x] = 0;
+      }
+      if (imaginaryRows == null) {
+        for (int x = 0; x < size; x++) {
+          imaginary[index + x] = 0;
+        }
+      } else {
+        int[] imaginaryRow = imaginaryRows[y];
+        for (int x = 0; x < available; x++) {
+          imaginary[index + x] = imaginaryRow[firstColumn + x];
+        }
+        for (int x = available; x < size; x++) {
+          imaginary[index + x] = 0;
+        }
+      }
+    }
+  }
+
+  /**
+   * Private method for multiplying a transformed tile by the transformed kernel, point by point.
+   *
+   * @param real            the real part of the tile, overwritten with the product
+   * @param imaginary       the imaginary part of the tile, overwritten with the product
+   * @param kernelReal      the real part of the kernel spectrum
+   * @param kernelImaginary the imaginary part of the kernel spectrum
+   */
+  private static void multiply(double[] real, double[] imaginary, double[] kernelReal,
+                               double[] kernelImaginary) {
+    for (int i = 0; i < real.length; i++) {
+      double a = real[i];
+      double b = imaginary[i];
+      real[i] = a * kernelReal[i] - b * kernelImaginary[i];
+      imaginary[i] = a * kernelImaginary[i] + b * kernelReal[i];
+    }
+  }
+
+  /**
+   * A radix-2 fast Fourier transform of square tiles whose size is a power of two. The tables
+   * are read only once built, so one transform can be shared by every thread.
+   */
+  private static final class Transform {
+
+    private final int size;
+    private final int[] reversed;
+    private final double[] cosines;
+    private final double[] sines;
+
+    /**
+     * Constructor building the tables for tiles of the given size.
+     *
+     * @param size the size of the tiles, a power of two
+     */
+    private Transform(int size) {
+      this.size = size;
+      int bits = Integer.numberOfTrailingZeros(size);
+      this.reversed = new int[size];
+      for (int i = 0; i < size; i++) {
+        this.reversed[i] = Integer.reverse(i) >>> (32 - bits);
+      }
+      this.cosines = new double[size / 2];
+      this.sines = new double[size / 2];
+      for (int i = 0; i < size / 2; i++) {
+        double angle = -2 * Math.PI * i / size;
+        this.cosines[i] = Math.cos(angle);
+        this.sines[i] = Math.sin(angle);
+      }
+    }
+
+    /**
+     * Transforms a tile in place, first every row and then every column.
+     *
+     * @param real      the real part of the tile
+     * @param imaginary the imaginary part of the tile
+     */
+    private void forward2d(double[] real, double[] imaginary) {
+      transform2d(real, imaginary, 1);
+    }
+
+    /**
+     * Transforms a tile back in place, without dividing by the number of points.
+     *
+     * @param real      the real part of the tile
+     * @param imaginary the imaginary part of the tile
+     */
+    private void inverse2d(double[] real, double[] imaginary) {
+      transform2d(real, imaginary, -1);
+    }
+
+    /**
+     * Private method for transforming every row and then every column of a tile.
+     *
+     * @param real      the real part of the tile
+     * @param imaginary the imaginary part of the tile
+     * @param direction 1 for the forward transform, -1 for the inverse
+     */
+    private void transform2d(double[] real, double[] imaginary, int direction) {
+      for (int r = 0; r < this.size; r++) {
+        transform(real, imaginary, r * this.size, 1, direction);
+      }
+      for (int c = 0; c < this.size; c++) {
+        transform(real, imaginary, c, this.size, direction);
+      }
+    }
+
+    /**
+     * Private method for transforming one row or column of a tile in place, with an iterative
+     * radix-2 transform on the points offset, offset + stride and so on.
+     *
+     * @param real      the real part of the tile
+     * @param imaginary the imaginary part of the tile
+     * @param offset    the index of the first point
+     * @param stride    the distance between points, 1 for a row and the size for a column
+     * @param direction 1 for the forward transform, -1 for the inverse
+     */
+    private void transform(double[] real, double[] imaginary, int offset, int stride,
+                           int direction) {
+      int n = this.size;
+      for (int i = 0; i < n; i++) {
+        int j = this.reversed[i];
+        if (i < j) {
+          int a = offset + i * stride;
+          int b = offset + j * stride;
+          double swap = real[a];
+          real[a] = real[b];
+          real[b] = swap;
+          swap = imaginary[a];
+          imaginary[a] = imaginary[b];
+          imaginary[b] = swap;
+        }
+      }
+
+      for (int length = 2; length <= n; length = length * 2) {
+        int half = length / 2;
+        int step = n / length;
+        for (int start = 0; start < n; start += length) {
+          for (int k = 0; k < half; k++) {
+            double cos = this.cosines[k * step];
+            double sin = direction * this.sines[k * step];
+            int a = offset + (start + k) * stride;
+            int b = a + half * stride;
+            double productReal = real[b] * cos - imaginary[b] * sin;
+            double productImaginary = real[b] * sin + imaginary[b] * cos;
+            real[b] = real[a] - productReal;
+            imaginary[b] = imaginary[a] - productImaginary;
+            real[a] = real[a] + productReal;
+            imaginary[a] = imaginary[a] + productImaginary;
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package images;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Measures how many megapixels per second each filter path processes, on one thread and on every
+ * available processor. Uses the images given as arguments, or every png in the res folder.
+ */
+public class FilterBenchmark {
+
+  // Untimed runs that let the JIT compile the loops, then timed runs averaged
+  private static final int WARMUP_RUNS = 10;
+  private static final int TIMED_RUNS = 10;
+
+  /**
+   * Runs the benchmark and prints a line per image, path and thread count.
+   *
+   * @param args paths of the images to use, every png in res when there are none
+   */
+  public static void main(String[] args) {
+    List<String> filenames = new ArrayList<>();
+    for (String arg : args) {
+      filenames.add(arg);
+    }
+    if (filenames.isEmpty()) {
+      File[] files = new File("res").listFiles((dir, name) -> name.endsWith(".png"));
+      if (files == null) {
+        System.out.println("No images given and no res folder found.");
+        return;
+      }
+      for (File file : files) {
+        filenames.add(file.getPath());
+      }
+    }
+
+    Map<String, BiConsumer<RgbBuffer, RgbBuffer>> paths = new LinkedHashMap<>();
+    paths.put("blur (fixed point, separable)", ArrayFilter::applyBlur);
+    paths.put("sharpen (fixed point, direct)", ArrayFilter::applySharpen);
+    paths.put("greyscale (colour matrix)", ArrayFilter::applyGreyscale);
+    paths.put("sepia (colour matrix)", ArrayFilter::applySepia);
+    paths.put("histogram equalization", ArrayFilter::histogramEqualization);
+    paths.put("clahe (8x8 tiles)", (image, destination) ->
+            ArrayFilter.applyClahe(image, destination, 8, 8, 3));
+    paths.put("edge detection", (image, destination) ->
+            ArrayFilter.applySobelEdgeDetection(image, destination, EdgeMode.ZERO, false));
+    paths.put("edge detection (fast magnitude)", (image, destination) ->
+            ArrayFilter.applySobelEdgeDetection(image, destination, EdgeMode.ZERO, true));
+    paths.put("dither (wavefront)", ArrayFilter::applyFloydSteinbergDither);
+    paths.put("clamp (row store)", FilterBenchmark::clampRows);
+
+    int processors = Runtime.getRuntime().availableProcessors();
+    int[] threadCounts = processors == 1 ? new int[] {1} : new int[] {1, processors};
+    for (String filename : filenames) {
+      RgbBuffer image = ImageUtilities.readImage(filename);
+      RgbBuffer destination = image.createBlank(image.getWidth(), image.getHeight());
+      double megapixels = image.getWidth() * (double) image.getHeight() / 1e6;
+      System.out.println(String.format("%s (%dx%d)", filename, image.getWidth(),
+              image.getHeight()));
+      for (Map.Entry<String, BiConsumer<RgbBuffer, RgbBuffer>> path : paths.entrySet()) {
+        for (int threads : threadCounts) {
+          ArrayFilter.setParallelism(threads);
+          double seconds = time(path.getValue(), image, destination);
+          System.out.println(String.format("  %-32s %3d threads %10.1f MPix/s", path.getKey(),
+                  threads, megapixels / seconds));
+        }
+      }
+    }
+    ArrayFilter.setParallelism(processors);
+  }
+
+  /**
+   * Private method for timing an operation, returning the average time of the timed runs.
+   *
+   * @param operation   the operation to time
+   * @param image       the image to run the operation on
+   * @param destination buffer of the same size to write the result into
+   * @return the average time of one run in seconds
+   */
+  private static double time(BiConsumer<RgbBuffer, RgbBuffer> operation, RgbBuffer image,
+                             RgbBuffer destination) {
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      operation.accept(image, destination);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < TIMED_RUNS; i++) {
+      operation.accept(image, destination);
+    }
+    return (System.nanoTime() - start) / 1e9 / TIMED_RUNS;
+  }
+
+  /**
+   * Private method for copying an image channel by channel through the saturating row store that
+   * every filter ends with.
+   *
+   * @param image       the image to copy
+   * @param destination buffer of the same size to copy into
+   */
+  private static void clampRows(RgbBuffer image, RgbBuffer destination) {
+    RowBands.forEach(image.getHeight(), (band, startRow, endRow) -> {
+      int[] row = new int[image.getWidth()];
+      for (int z = 0; z < 3; z++) {
+        for (int r = startRow; r < endRow; r++) {
+          image.readChannelRow(z, r, row);
+          destination.writeChannelRow(z, r, row);
+        }
+      }
+    });
+  }
+}
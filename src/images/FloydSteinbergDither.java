@@ -0,0 +1,190 @@
+package images;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Dithers the luminance of an image to black and white with Floyd-Steinberg error diffusion,
+ * running rows in parallel as a staggered wavefront.
+ *
+ * <p>A pixel needs the error of the pixel before it and of the three pixels above it, so a row
+ * dithers a block of columns once the row above has finished the block after it. Only the error
+ * carried into the rows being dithered is kept, one row for each worker and one for the row below
+ * them, which is two rows when dithering on one thread. The errors are added in a different order
+ * than one pixel at a time, but each is truncated the same way and the sums are integers, so the
+ * result is identical for any number of threads.
+ *
+ * <p>A row below can only move on once the row above it does, so the workers run on threads of
+ * their own rather than on the shared pool, where they could be left waiting for bands that the
+ * pool never gets to start.
+ */
+final class FloydSteinbergDither {
+
+  // Columns a row works through before letting the row below catch up, and the number of checks
+  // a row waiting on the row above spins for before yielding its thread
+  private static final int BLOCK = 256;
+  private static final int SPINS = 1 << 10;
+
+  private final RgbBuffer image;
+  private final RgbBuffer finalImage;
+  private final int width;
+  private final int height;
+  private final int workers;
+
+  // Error carried into a row, padded by a column each side. Rows take them in turn.
+  private final int[][] errorRows;
+  // Number of columns of each row that have been dithered
+  private final AtomicIntegerArray progress;
+  // The first exception a worker failed with
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  /**
+   * Private constructor for dithering one image with the given number of workers.
+   *
+   * @param image      the RGB image to be dithered
+   * @param finalImage buffer of the same size to overwrite, may be the image itself
+   * @param workers    the number of rows dithered at once
+   */
+  private FloydSteinbergDither(RgbBuffer image, RgbBuffer finalImage, int workers) {
+    this.image = image;
+    this.finalImage = finalImage;
+    this.width = image.getWidth();
+    this.height = image.getHeight();
+    this.workers = workers;
+    this.errorRows = new int[workers + 1][this.width + 2];
+    this.progress = new AtomicIntegerArray(this.height);
+  }
+
+  /**
+   * Dithers an image, using up to the given number of threads. Narrow images use fewer, since a
+   * row can only be a block ahead of the row below it.
+   *
+   * @param image      the RGB image to be dithered
+   * @param finalImage buffer of the same size to overwrite, may be the image itself
+   * @param threads    the most threads to use, including the calling thread
+   * @return the buffer holding the dithered image
+   */
+  static RgbBuffer apply(RgbBuffer image, RgbBuffer finalImage, int threads) {
+    int workers = Math.max(1, Math.min(Math.min(threads, image.getHeight()),
+            image.getWidth() / (2 * BLOCK)));
+    new FloydSteinbergDither(image, finalImage, workers).run();
+    return finalImage;
+  }
+
+  /**
+   * Private method for running every worker and waiting for them all, the first on the calling
+   * thread. An exception a worker failed with is thrown again once all of them have stopped.
+   */
+  private void run() {
+    Thread[] threads = new Thread[this.workers];
+    for (int w = 1; w < this.workers; w++) {
+      int worker = w;
+      threads[w] = new Thread(() -> runWorker(worker), "dither-worker-" + w);
+      threads[w].setDaemon(true);
+      threads[w].start();
+    }
+    runWorker(0);
+
+    boolean interrupted = false;
+    for (int w = 1; w < this.workers; w++) {
+      while (threads[w].isAlive()) {
+        try {
+          threads[w].join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    Throwable thrown = this.failure.get();
+    if (thrown instanceof RuntimeException) {
+      throw (RuntimeException) thrown;
+    } else if (thrown instanceof Error) {
+      throw (Error) thrown;
+    }
+  }
+
+  /**
+   * Private method for dithering the rows of one worker, recording an exception it fails with.
+   * Every row is then marked as finished so that no other worker is left waiting.
+   *
+   * @param worker the index of the worker
+   */
+  private void runWorker(int worker) {
+    try {
+      ditherRows(worker);
+    } catch (RuntimeException | Error e) {
+      this.failure.compareAndSet(null, e);
+      for (int r = 0; r < this.height; r++) {
+        this.progress.set(r, this.width);
+      }
+    }
+  }
+
+  /**
+   * Private method for dithering every row that is a multiple of the number of workers after the
+   * first row of a worker.
+   *
+   * @param worker the index of the worker, which is also its first row
+   */
+  private void ditherRows(int worker) {
+    int[][] channelRows = new int[3][this.width];
+    int[] luminanceRow = new int[this.width];
+    int[] pixels = new int[this.width];
+
+    for (int r = worker; r < this.height; r = r + this.workers) {
+      ArrayFilter.readLuminance(this.image, r, channelRows, luminanceRow);
+      int[] errorIn = this.errorRows[r % (this.workers + 1)];
+      int[] errorBelow = this.errorRows[(r + 1) % (this.workers + 1)];
+
+      int errorRight = 0;
+      for (int start = 0; start < this.width; start = start + BLOCK) {
+        int end = Math.min(this.width, start + BLOCK);
+        if (r > 0) {
+          awaitDithered(r - 1, Math.min(this.width, end + 1));
+        }
+        for (int c = start; c < end; c++) {
+          int oldColor = luminanceRow[c] + errorIn[c + 1] + errorRight;
+          int newColor = oldColor >= 128 ? 255 : 0;
+          int error = oldColor - newColor;
+          pixels[c] = newColor == 0 ? 0 : 0xFFFFFF;
+
+          // Errors past the edges land in the padding, or in a row below the image, and are
+          // never read
+          errorRight = 7 * error / 16;
+          errorBelow[c] = errorBelow[c] + (3 * error / 16);
+          errorBelow[c + 1] = errorBelow[c + 1] + (5 * error / 16);
+          errorBelow[c + 2] = errorBelow[c + 2] + (1 * error / 16);
+        }
+        this.progress.set(r, end);
+      }
+
+      this.finalImage.writeRgbRow(r, pixels);
+      // The row above has finished, so nothing adds to this row any more
+      Arrays.fill(errorIn, 0);
+    }
+  }
+
+  /**
+   * Private method for waiting until a row has been dithered up to a given column, by spinning
+   * briefly and then giving up the thread until it has.
+   *
+   * @param row     the row to wait for
+   * @param columns the number of columns the row needs to have dithered
+   */
+  private void awaitDithered(int row, int columns) {
+    int spins = 0;
+    while (this.progress.get(row) < columns) {
+      if (spins < SPINS) {
+        spins++;
+        Thread.onSpinWait();
+      } else {
+        Thread.yield();
+      }
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package images;
+
+/**
+ * Whether the model defers blur, sharpen and custom kernels so that consecutive ones can be
+ * composed into a single kernel, applied in one pass over the image instead of one per filter.
+ * Consecutive color transformations and histogram equalizations are chained into one pass
+ * whenever the mode is not off, since that never changes the result.
+ */
+public enum FusionMode {
+
+  /**
+   * Every filter is applied as soon as it is asked for, on its own.
+   */
+  OFF,
+
+  /**
+   * Filters are deferred but only composed where the result is provably the same as applying them
+   * one at a time, which is when one of them only moves pixels around. Identity kernels are
+   * dropped, and shifts are composed with any kernel when edges wrap around.
+   */
+  EXACT,
+
+  /**
+   * Consecutive filters with the same edge mode are composed whenever the composed kernel is
+   * cheaper to apply. The result is no longer rounded and clamped between the filters, which can
+   * change pixels by one level, and within the reach of the composed kernel from the edges of the
+   * image it can differ further unless edges wrap around.
+   */
+  FUSED
+}
@@ -0,0 +1,90 @@
+package images;
+
+/**
+ * Class holding what the header of an image file says about the image, without its pixels.
+ */
+public final class ImageInfo {
+
+  private final int width;
+  private final int height;
+  private final int bands;
+  private final String format;
+
+  /**
+   * Constructor for the information about an image file.
+   *
+   * @param width  the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @param bands  the number of bands of each decoded pixel, including alpha
+   * @param format the name of the image format, such as png
+   * @throws IllegalArgumentException if a dimension is negative or the format is null
+   */
+  public ImageInfo(int width, int height, int bands, String format)
+          throws IllegalArgumentException {
+    if (width < 0 || height < 0 || bands < 0) {
+      throw new IllegalArgumentException("Image dimensions can't be negative.");
+    }
+    if (format == null) {
+      throw new IllegalArgumentException("Image format can't be null.");
+    }
+    this.width = width;
+    this.height = height;
+    this.bands = bands;
+    this.format = format;
+  }
+
+  /**
+   * Returns the width of the image in pixels.
+   *
+   * @return the width of the image in pixels
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns the height of the image in pixels.
+   *
+   * @return the height of the image in pixels
+   */
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Returns the number of bands of each decoded pixel, including alpha.
+   *
+   * @return the number of bands
+   */
+  public int getBands() {
+    return this.bands;
+  }
+
+  /**
+   * Returns the name of the image format, such as png.
+   *
+   * @return the name of the image format
+   */
+  public String getFormat() {
+    return this.format;
+  }
+
+  /**
+   * Returns the number of pixels in the image.
+   *
+   * @return the width times the height of the image
+   */
+  public long getPixelCount() {
+    return (long) this.width * this.height;
+  }
+
+  /**
+   * Returns a summary of the image information.
+   *
+   * @return a summary of the image information
+   */
+  @Override
+  public String toString() {
+    return String.format("%s %dx%d, %d bands", this.format, this.width, this.height, this.bands);
+  }
+}
@@ -17,6 +17,24 @@ public interface ImageModel {
    */
   public void loadImage(String filename) throws IllegalArgumentException;
 
+  /**
+   * Load part of an image into the image model, keeping only every few pixels. This is much faster
+   * than loading a large image in full, which makes it suited for previews.
+   *
+   * @param filename    the name of the file containing the image.
+   * @param startX      the column of the first pixel to load
+   * @param startY      the row of the first pixel to load
+   * @param width       the width of the region to load in pixels
+   * @param height      the height of the region to load in pixels, parts of the region outside
+   *                    the image are ignored
+   * @param subsampling the distance between loaded pixels in both directions, 1 to load all
+   * @throws IllegalArgumentException if the filename is invalid, the region is outside the image,
+   *                                  the subsampling is not positive or if something goes wrong
+   *                                  loading the image
+   */
+  public void loadImage(String filename, int startX, int startY, int width, int height,
+                        int subsampling) throws IllegalArgumentException;
+
   /**
    * Save the data in the image model to a file.
    *
@@ -37,6 +55,44 @@ public interface ImageModel {
    */
   public void applySharpen();
 
+  /**
+   * Blurs the image by averaging the square of pixels around every pixel. The time taken does not
+   * depend on the radius.
+   *
+   * @param radius the number of pixels the square reaches out from its center
+   * @throws IllegalArgumentException if the radius is negative or more than 65536
+   */
+  public void applyBoxBlur(int radius) throws IllegalArgumentException;
+
+  /**
+   * Blurs the image with a gaussian blur, approximated by three box blurs. The time taken does
+   * not depend on sigma.
+   *
+   * @param sigma the standard deviation of the gaussian in pixels
+   * @throws IllegalArgumentException if sigma is negative, not a number or too large
+   */
+  public void applyGaussianBlur(double sigma) throws IllegalArgumentException;
+
+  /**
+   * Filters the image with a given kernel. The center of the kernel is at row (height - 1) / 2 and
+   * column (width - 1) / 2, and each weight applies to the pixel under it. The kernel is analysed
+   * once and cached, so applying the same weights again skips the analysis.
+   *
+   * @param kernel the filter kernel, every row the same length
+   * @throws IllegalArgumentException if the kernel is empty, its rows differ in length or a
+   *                                  weight is not a finite number
+   */
+  public void applyKernel(double[][] kernel) throws IllegalArgumentException;
+
+  /**
+   * Applies a given color transformation matrix to the image. Each row of the matrix gives one
+   * output channel as a weighted sum of the red, green and blue values of the pixel.
+   *
+   * @param matrix the 3x3 color transformation matrix
+   * @throws IllegalArgumentException if the matrix is not 3x3 or a weight is not a finite number
+   */
+  public void applyColorMatrix(double[][] matrix) throws IllegalArgumentException;
+
   /**
    * Apply the grayscale color transformation to the data in the image model.
    */
@@ -66,6 +122,14 @@ public interface ImageModel {
    */
   public void applyEdgeDetection();
 
+  /**
+   * Produces a grayscale image where edges (areas of high contrast) are highlighted, optionally
+   * adding the absolute gradients instead of taking the length of the gradient, which is faster.
+   *
+   * @param fastMagnitude whether to use the faster approximate gradient magnitude
+   */
+  public void applyEdgeDetection(boolean fastMagnitude);
+
   /**
    * Crops the image by discarding pixels before the lower bounds and after the upper bounds.
    *
@@ -95,9 +159,67 @@ public interface ImageModel {
   public void applyHistogramEqualization();
 
   /**
-   * Returns the image stored in the model as a BufferedImage.
+   * Equalizes the histogram of each channel in every tile of a grid, limiting how much the
+   * contrast is stretched, and blends the tables of neighbouring tiles so there are no seams.
+   *
+   * @param tilesX    the number of tiles across the image
+   * @param tilesY    the number of tiles down the image
+   * @param clipLimit the most pixels a channel value may have in a tile, as a multiple of the
+   *                  average count of a value
+   * @throws IllegalArgumentException if a number of tiles is not positive or the clip limit is
+   *                                  not a positive number
+   */
+  public void applyClahe(int tilesX, int tilesY, double clipLimit)
+          throws IllegalArgumentException;
+
+  /**
+   * Sets how blur, sharpen and edge detection treat the pixels beyond the edges of the image.
+   * Pixels outside the image count as black until this is called.
+   *
+   * @param edgeMode how pixels outside the image are treated
+   * @throws IllegalArgumentException if the edge mode is null
+   */
+  public void setEdgeMode(EdgeMode edgeMode) throws IllegalArgumentException;
+
+  /**
+   * Sets whether blur, sharpen and custom kernels are deferred so consecutive ones can be
+   * composed into a single kernel and applied in one pass. Filters are composed where the result
+   * is provably unchanged until this is called.
+   *
+   * @param fusionMode when consecutive filters are composed
+   * @throws IllegalArgumentException if the fusion mode is null
+   */
+  public void setFusionMode(FusionMode fusionMode) throws IllegalArgumentException;
+
+  /**
+   * Sets how many threads image operations may use. Results are the same for any number of
+   * threads. The setting is shared by every model.
+   *
+   * @param threads the number of threads, 1 to run operations on the calling thread only
+   * @throws IllegalArgumentException if the number of threads is less than 1
+   */
+  public void setParallelism(int threads) throws IllegalArgumentException;
+
+  /**
+   * Returns the image stored in the model as a BufferedImage. The image may share its pixels with
+   * the model and is only guaranteed to stay unchanged until the next call to this method.
    *
    * @return the image stored in the model as a BufferedImage.
    */
   public BufferedImage getBufferedImage();
+
+  /**
+   * Returns a detached copy of the image stored in the model as a BufferedImage, which is not
+   * affected by anything done to the model afterwards.
+   *
+   * @return a copy of the image stored in the model as a BufferedImage.
+   */
+  public BufferedImage getBufferedImageSnapshot();
+
+  /**
+   * Returns how many pixels of the image have each value in each channel.
+   *
+   * @return the histogram of the red, green and blue channel, each of 256 counts
+   */
+  public int[][] getHistograms();
 }
@@ -1,49 +1,126 @@
 package images;
 
-import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BandedSampleModel;
 import java.awt.image.BufferedImage;
-import java.io.FileInputStream;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * Image utility class that has methods to read an image from file and write to
- * a file.
+ * a file. Files with the .iem extension use an uncompressed raw format meant for intermediate
+ * images, every other file goes through ImageIO.
  */
 public class ImageUtilities {
 
   /**
-   * Read an image from a file and convert it to a 3D array of integer values. The
-   * first dimension (rows) represents the height, the second dimension (columns)
-   * represents the width, and the third represents the number of channels in the
-   * image: the first value is the RED channel, the second value is the GREEN
-   * channel, and the third is the BLUE channel. There is only ever 3 channels in
-   * our representation since we do not support transparent images.
+   * Read an image from a file and convert it to a packed RGB buffer. Each pixel is stored as a
+   * single integer with the RED channel in bits 16 to 23, the GREEN channel in bits 8 to 15 and
+   * the BLUE channel in bits 0 to 7. There is only ever 3 channels in our representation since we
+   * do not support transparent images.
    *
    * @param filename the name of the file to be read
-   * @return a 3D array of integer values
+   * @return a packed RGB buffer of the image
+   * @throws IllegalArgumentException if the filename provided does not contain an
+   *                                  image.
+   */
+  public static PackedRgbBuffer readImage(String filename) throws IllegalArgumentException {
+    return (PackedRgbBuffer) readImage(filename, Long.MAX_VALUE);
+  }
+
+  /**
+   * Read an image from a file and convert it to an RGB buffer. Images with at least the given
+   * number of pixels are stored as three byte planes, smaller images as packed integers.
+   *
+   * @param filename        the name of the file to be read
+   * @param planarThreshold the number of pixels from which a planar buffer is used
+   * @return an RGB buffer of the image
    * @throws IllegalArgumentException if the filename provided does not contain an
    *                                  image.
    */
-  public static int[][][] readImage(String filename) throws IllegalArgumentException {
+  public static RgbBuffer readImage(String filename, long planarThreshold)
+          throws IllegalArgumentException {
+    return readImage(filename, null, 1, planarThreshold);
+  }
+
+  /**
+   * Read part of an image from a file, keeping only every few pixels, and convert it to an RGB
+   * buffer. The region and subsampling are passed to the image reader, so skipped pixels are
+   * never stored and formats that support it do not decode them either. The buffer holds the
+   * first pixel of every block of subsampling by subsampling pixels in the region. Parts of the
+   * region outside the image are ignored.
+   *
+   * @param filename        the name of the file to be read
+   * @param region          the region of the image to read in pixels, or null for all of it
+   * @param subsampling     the distance between kept pixels in both directions, 1 to keep all
+   * @param planarThreshold the number of pixels from which a planar buffer is used
+   * @return an RGB buffer of the region of the image
+   * @throws IllegalArgumentException if the filename provided does not contain an image, the
+   *                                  subsampling is not positive or the region is outside the
+   *                                  image
+   */
+  public static RgbBuffer readImage(String filename, Rectangle region, int subsampling,
+                                    long planarThreshold) throws IllegalArgumentException {
     if (filename == null || "".equals(filename)) {
       throw new IllegalArgumentException("Invalid filename provided for reading the image file.");
     }
-    int[][][] result = null;
-    try {
-      BufferedImage input = ImageIO.read(new FileInputStream(filename));
-
-      result = new int[input.getHeight()][input.getWidth()][3];
+    if (subsampling < 1) {
+      throw new IllegalArgumentException("Subsampling must be positive.");
+    }
+    if (region != null && region.isEmpty()) {
+      throw new IllegalArgumentException("Region to read can't be empty.");
+    }
+    if (RawImageFormat.isRawFile(filename)) {
+      try {
+        return RawImageFormat.read(filename, region, subsampling, planarThreshold);
+      } catch (IOException ex) {
+        throw new IllegalArgumentException("Something went wrong reading the image file.");
+      }
+    }
+    RgbBuffer result = null;
+    try (ImageInputStream stream = ImageIO.createImageInputStream(new File(filename))) {
+      ImageReader reader = openReader(stream);
+      try {
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (region != null) {
+          Rectangle source = region.intersection(
+                  new Rectangle(0, 0, reader.getWidth(0), reader.getHeight(0)));
+          if (source.isEmpty()) {
+            throw new IllegalArgumentException("Region to read is outside the image.");
+          }
+          param.setSourceRegion(source);
+        }
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        BufferedImage input = reader.read(0, param);
 
-      for (int i = 0; i < input.getHeight(); i++) {
-        for (int j = 0; j < input.getWidth(); j++) {
-          int color = input.getRGB(j, i);
-          Color c = new Color(color);
-          result[i][j][0] = c.getRed();
-          result[i][j][1] = c.getGreen();
-          result[i][j][2] = c.getBlue();
+        if ((long) input.getWidth() * input.getHeight() >= planarThreshold) {
+          result = new PlanarRgbBuffer(input.getWidth(), input.getHeight());
+        } else {
+          result = new PackedRgbBuffer(input.getWidth(), input.getHeight());
         }
+        copyPixels(input, result);
+      } finally {
+        reader.dispose();
       }
     } catch (IOException ex) {
       throw new IllegalArgumentException("Something went wrong reading the image file.");
@@ -52,63 +129,250 @@ public class ImageUtilities {
   }
 
   /**
-   * Return the width of an image in a file.
+   * Copies every pixel of a decoded image into an RGB buffer of the same size, a row at a time.
+   * The layouts ImageIO usually decodes to are read straight from the data buffer: interleaved
+   * 8 bit sRGB bytes such as TYPE_3BYTE_BGR, packed sRGB integers such as TYPE_INT_RGB, and single
+   * band images such as TYPE_BYTE_GRAY or indexed images, which map samples through a lookup table
+   * taken from the color model. Any other layout is converted by the color model a row at a time.
+   * Every path gives exactly the values of BufferedImage.getRGB.
    *
-   * @param filename the name of the file containing the image.
-   * @return the width of the image in the file
-   * @throws if the filename provided does not contain an image.
+   * @param input  the decoded image
+   * @param result the buffer to copy the pixels into
+   */
+  private static void copyPixels(BufferedImage input, RgbBuffer result) {
+    ColorModel colorModel = input.getColorModel();
+    SampleModel sampleModel = input.getSampleModel();
+    DataBuffer data = input.getRaster().getDataBuffer();
+    boolean isPlainSrgb = colorModel.getColorSpace().isCS_sRGB()
+            && !colorModel.isAlphaPremultiplied();
+
+    if (isPlainSrgb && colorModel instanceof ComponentColorModel
+            && sampleModel instanceof ComponentSampleModel && data instanceof DataBufferByte
+            && colorModel.getNumColorComponents() == 3) {
+      copyInterleavedBytes(input, result);
+    } else if (isPlainSrgb && colorModel instanceof DirectColorModel
+            && sampleModel instanceof SinglePixelPackedSampleModel && data instanceof DataBufferInt
+            && ((DirectColorModel) colorModel).getRedMask() == 0xFF0000
+            && ((DirectColorModel) colorModel).getGreenMask() == 0xFF00
+            && ((DirectColorModel) colorModel).getBlueMask() == 0xFF) {
+      copyPackedInts(input, result);
+    } else if (sampleModel.getNumBands() == 1 && sampleModel.getSampleSize(0) <= 8) {
+      copySingleBand(input, result);
+    } else {
+      int[] row = new int[input.getWidth()];
+      for (int r = 0; r < input.getHeight(); r++) {
+        input.getRGB(0, r, input.getWidth(), 1, row, 0, input.getWidth());
+        result.writeRgbRow(r, row);
+      }
+    }
+  }
+
+  /**
+   * Copies an image whose red, green and blue samples are 8 bit sRGB values held in bytes, such as
+   * TYPE_3BYTE_BGR or TYPE_4BYTE_ABGR. Any alpha samples are skipped.
+   *
+   * @param input  the decoded image
+   * @param result the buffer to copy the pixels into
+   */
+  private static void copyInterleavedBytes(BufferedImage input, RgbBuffer result) {
+    WritableRaster raster = input.getRaster();
+    ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+    DataBufferByte data = (DataBufferByte) raster.getDataBuffer();
+    int[] banks = sampleModel.getBankIndices();
+    byte[] red = data.getData(banks[0]);
+    byte[] green = data.getData(banks[1]);
+    byte[] blue = data.getData(banks[2]);
+    int x = -raster.getSampleModelTranslateX();
+    int y = -raster.getSampleModelTranslateY();
+    int redStart = sampleModel.getOffset(x, y, 0) + data.getOffsets()[banks[0]];
+    int greenStart = sampleModel.getOffset(x, y, 1) + data.getOffsets()[banks[1]];
+    int blueStart = sampleModel.getOffset(x, y, 2) + data.getOffsets()[banks[2]];
+    int pixelStride = sampleModel.getPixelStride();
+    int scanlineStride = sampleModel.getScanlineStride();
+
+    int[] row = new int[input.getWidth()];
+    for (int r = 0; r < input.getHeight(); r++) {
+      int redIndex = redStart + r * scanlineStride;
+      int greenIndex = greenStart + r * scanlineStride;
+      int blueIndex = blueStart + r * scanlineStride;
+      for (int c = 0; c < row.length; c++) {
+        row[c] = ((red[redIndex] & 0xFF) << 16) | ((green[greenIndex] & 0xFF) << 8)
+                | (blue[blueIndex] & 0xFF);
+        redIndex += pixelStride;
+        greenIndex += pixelStride;
+        blueIndex += pixelStride;
+      }
+      result.writeRgbRow(r, row);
+    }
+  }
+
+  /**
+   * Copies an image whose pixels are packed 0xRRGGBB integers, such as TYPE_INT_RGB or
+   * TYPE_INT_ARGB. Any alpha bits are discarded by the buffer.
+   *
+   * @param input  the decoded image
+   * @param result the buffer to copy the pixels into
    */
-  public static int getWidth(String filename) {
+  private static void copyPackedInts(BufferedImage input, RgbBuffer result) {
+    WritableRaster raster = input.getRaster();
+    SinglePixelPackedSampleModel sampleModel =
+            (SinglePixelPackedSampleModel) raster.getSampleModel();
+    DataBufferInt data = (DataBufferInt) raster.getDataBuffer();
+    int[] pixels = data.getData();
+    int start = sampleModel.getOffset(-raster.getSampleModelTranslateX(),
+            -raster.getSampleModelTranslateY()) + data.getOffset();
+    int scanlineStride = sampleModel.getScanlineStride();
+
+    int[] row = new int[input.getWidth()];
+    for (int r = 0; r < input.getHeight(); r++) {
+      System.arraycopy(pixels, start + r * scanlineStride, row, 0, row.length);
+      result.writeRgbRow(r, row);
+    }
+  }
+
+  /**
+   * Copies an image with a single band of at most 8 bits, such as TYPE_BYTE_GRAY, TYPE_BYTE_BINARY
+   * or TYPE_BYTE_INDEXED. Every possible sample is converted once by the color model into a lookup
+   * table. Byte samples are read straight from the data buffer, packed ones through the raster.
+   *
+   * @param input  the decoded image
+   * @param result the buffer to copy the pixels into
+   */
+  private static void copySingleBand(BufferedImage input, RgbBuffer result) {
+    WritableRaster raster = input.getRaster();
+    SampleModel sampleModel = raster.getSampleModel();
+    ColorModel colorModel = input.getColorModel();
+    // Converted through a pixel of the same layout, since getRGB(int) of gray color models does
+    // not give the same values as the image
+    WritableRaster probe = raster.createCompatibleWritableRaster(1, 1);
+    int[] lookup = new int[1 << sampleModel.getSampleSize(0)];
+    for (int i = 0; i < lookup.length; i++) {
+      probe.setSample(0, 0, 0, i);
+      lookup[i] = colorModel.getRGB(probe.getDataElements(0, 0, null));
+    }
+
+    int[] row = new int[input.getWidth()];
+    if (sampleModel instanceof ComponentSampleModel
+            && raster.getDataBuffer() instanceof DataBufferByte
+            && sampleModel.getSampleSize(0) == 8) {
+      ComponentSampleModel componentModel = (ComponentSampleModel) sampleModel;
+      DataBufferByte data = (DataBufferByte) raster.getDataBuffer();
+      byte[] samples = data.getData(componentModel.getBankIndices()[0]);
+      int start = componentModel.getOffset(-raster.getSampleModelTranslateX(),
+              -raster.getSampleModelTranslateY(), 0)
+              + data.getOffsets()[componentModel.getBankIndices()[0]];
+      int pixelStride = componentModel.getPixelStride();
+      int scanlineStride = componentModel.getScanlineStride();
+      for (int r = 0; r < input.getHeight(); r++) {
+        int index = start + r * scanlineStride;
+        for (int c = 0; c < row.length; c++) {
+          row[c] = lookup[samples[index] & 0xFF];
+          index += pixelStride;
+        }
+        result.writeRgbRow(r, row);
+      }
+    } else {
+      int[] samples = new int[row.length];
+      for (int r = 0; r < input.getHeight(); r++) {
+        raster.getSamples(0, r, row.length, 1, 0, samples);
+        for (int c = 0; c < row.length; c++) {
+          row[c] = lookup[samples[c]];
+        }
+        result.writeRgbRow(r, row);
+      }
+    }
+  }
+
+  /**
+   * Reads the header of an image file to find its dimensions, number of bands and format. The
+   * pixels are not decoded, so this is cheap even for very large images.
+   *
+   * @param filename the name of the file containing the image
+   * @return the information about the image in the file
+   * @throws IllegalArgumentException if the filename provided does not contain an image
+   */
+  public static ImageInfo probeImage(String filename) throws IllegalArgumentException {
     if (filename == null || "".equals(filename)) {
-      throw new IllegalArgumentException("Invalid filename provided for getting the width of file");
+      throw new IllegalArgumentException("Invalid filename provided for probing the image file.");
     }
-    int width = 0;
-    try {
-      BufferedImage input = ImageIO.read(new FileInputStream(filename));
-      width = input.getWidth();
+    if (RawImageFormat.isRawFile(filename)) {
+      try {
+        return RawImageFormat.probe(filename);
+      } catch (IOException ex) {
+        throw new IllegalArgumentException("Something went wrong probing the image file.");
+      }
+    }
+    try (ImageInputStream stream = ImageIO.createImageInputStream(new File(filename))) {
+      ImageReader reader = openReader(stream);
+      try {
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type == null) {
+          type = reader.getImageTypes(0).next();
+        }
+        return new ImageInfo(reader.getWidth(0), reader.getHeight(0), type.getNumBands(),
+                reader.getFormatName().toLowerCase());
+      } finally {
+        reader.dispose();
+      }
     } catch (IOException ex) {
-      throw new IllegalArgumentException(
-              "Something went wrong getting the width from the image file");
+      throw new IllegalArgumentException("Something went wrong probing the image file.");
     }
-    return width;
   }
 
   /**
-   * Return the height of an image in a file.
+   * Return the width of an image in a file. Only the header of the file is read.
+   *
+   * @param filename the name of the file containing the image.
+   * @return the width of the image in the file
+   * @throws IllegalArgumentException if the filename provided does not contain an image.
+   */
+  public static int getWidth(String filename) throws IllegalArgumentException {
+    return probeImage(filename).getWidth();
+  }
+
+  /**
+   * Return the height of an image in a file. Only the header of the file is read.
    *
    * @param filename the name of the file containing the image.
    * @return the height of the image in the file
-   * @throws if the filename provided does not contain an image.
+   * @throws IOException              never, kept for existing callers
+   * @throws IllegalArgumentException if the filename provided does not contain an image.
    */
-  public static int getHeight(String filename) throws IOException {
-    if (filename == null || "".equals(filename)) {
-      throw new IllegalArgumentException("Invalid filename provided for getting the width of file");
+  public static int getHeight(String filename) throws IOException, IllegalArgumentException {
+    return probeImage(filename).getHeight();
+  }
+
+  /**
+   * Finds a reader for an image stream and points it at the stream, ready to read the first image.
+   * The caller has to dispose of the reader.
+   *
+   * @param stream the stream of the image file, may be null if the file could not be opened
+   * @return a reader positioned on the stream
+   * @throws IllegalArgumentException if no reader recognizes the stream as an image
+   */
+  private static ImageReader openReader(ImageInputStream stream) throws IllegalArgumentException {
+    if (stream == null) {
+      throw new IllegalArgumentException("Image file could not be opened.");
     }
-    int height = 0;
-    try {
-      BufferedImage input = ImageIO.read(new FileInputStream(filename));
-      height = input.getHeight();
-    } catch (IOException ex) {
-      throw new IllegalArgumentException(
-              "Something went wrong getting the height from the image file");
+    Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+    if (!readers.hasNext()) {
+      throw new IllegalArgumentException("File does not contain a supported image.");
     }
-    return height;
+    ImageReader reader = readers.next();
+    reader.setInput(stream, true, true);
+    return reader;
   }
 
   /**
-   * Writing an image to a file and convert it from a 3D array of integer values. The
-   * first dimension (rows) represents the height, the second dimension (columns)
-   * represents the width, and the third represents the number of channels in the
-   * image: the first value is the RED channel, the second value is the GREEN
-   * channel, and the third is the BLUE channel. There is only ever 3 channels in
-   * our representation since we do not support transparent images.
+   * Writing an image to a file and convert it from an RGB buffer. There is only ever 3 channels
+   * in our representation since we do not support transparent images.
    *
-   * @param rgbData  the 3D array of integer values
+   * @param rgbData  the RGB buffer of the image
    * @param filename the name of the file to write the image to
    * @throws IllegalArgumentException if the rgbData or filename provided was invalid
    * @throws IllegalArgumentException if something went wrong when writing go the filename
    */
-  public static void writeImage(int[][][] rgbData, String filename)
+  public static void writeImage(RgbBuffer rgbData, String filename)
           throws IllegalArgumentException {
     if (rgbData == null) {
       throw new IllegalArgumentException("Invalid image data provided");
@@ -117,8 +381,17 @@ public class ImageUtilities {
       throw new IllegalArgumentException("Invalid filename provided");
     }
     try {
+      if (RawImageFormat.isRawFile(filename)) {
+        RawImageFormat.write(rgbData, filename);
+        return;
+      }
 
-      BufferedImage output = ImageUtilities.arrayToBufferedImage(rgbData);
+      // Standard layouts are written straight from the buffer, custom ones are converted since
+      // not every ImageIO writer supports them
+      BufferedImage output = ImageUtilities.wrapAsBufferedImage(rgbData);
+      if (output.getType() == BufferedImage.TYPE_CUSTOM) {
+        output = ImageUtilities.bufferToBufferedImage(rgbData);
+      }
 
       String extension = filename.substring(filename.indexOf(".") + 1);
       ImageIO.write(output, extension, new FileOutputStream(filename));
@@ -128,30 +401,88 @@ public class ImageUtilities {
   }
 
   /**
-   * Converts a 3-D array representing an RGB image to a BufferedImage.
+   * Writing an image to a file and convert it from a 3D array of integer values. The
+   * first dimension (rows) represents the height, the second dimension (columns)
+   * represents the width, and the third represents the number of channels in the
+   * image: the first value is the RED channel, the second value is the GREEN
+   * channel, and the third is the BLUE channel.
    *
-   * @param rgbData the 3D array of integer values
-   * @return the BufferedImage object of the 3D array
+   * @param rgbData  the 3D array of integer values
+   * @param filename the name of the file to write the image to
+   * @throws IllegalArgumentException if the rgbData or filename provided was invalid
+   * @throws IllegalArgumentException if something went wrong when writing go the filename
    */
-  public static BufferedImage arrayToBufferedImage(int[][][] rgbData) {
-    int height = rgbData.length;
-    int width = rgbData[0].length;
+  public static void writeImage(int[][][] rgbData, String filename)
+          throws IllegalArgumentException {
+    writeImage(PackedRgbBuffer.fromArray(rgbData), filename);
+  }
+
+  /**
+   * Creates a BufferedImage that shares the pixels of an RGB buffer without converting them. A
+   * packed buffer is viewed through a DataBufferInt over its pixel array and a planar buffer
+   * through a banded DataBufferByte over its planes. Changes to the buffer are visible in the
+   * image and the other way around. Other buffers are converted into a new image.
+   *
+   * @param rgbData the RGB buffer of the image
+   * @return the BufferedImage sharing the pixels of the buffer
+   */
+  public static BufferedImage wrapAsBufferedImage(RgbBuffer rgbData) {
+    int height = rgbData.getHeight();
+    int width = rgbData.getWidth();
+
+    if (rgbData instanceof PackedRgbBuffer) {
+      PackedRgbBuffer packed = (PackedRgbBuffer) rgbData;
+      int[] masks = {0xFF0000, 0xFF00, 0xFF};
+      DataBufferInt data = new DataBufferInt(packed.getPixels(),
+              packed.getPixels().length - packed.getOffset(), packed.getOffset());
+      SampleModel sampleModel = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width,
+              height, packed.getStride(), masks);
+      WritableRaster raster = Raster.createWritableRaster(sampleModel, data, null);
+      ColorModel colorModel = new DirectColorModel(24, masks[0], masks[1], masks[2]);
+      return new BufferedImage(colorModel, raster, false, null);
+    }
+    if (rgbData instanceof PlanarRgbBuffer) {
+      PlanarRgbBuffer planar = (PlanarRgbBuffer) rgbData;
+      byte[][] planes = {planar.getPlane(0), planar.getPlane(1), planar.getPlane(2)};
+      DataBufferByte data = new DataBufferByte(planes, width * height);
+      SampleModel sampleModel = new BandedSampleModel(DataBuffer.TYPE_BYTE, width, height, 3);
+      WritableRaster raster = Raster.createWritableRaster(sampleModel, data, null);
+      ColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+              false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+      return new BufferedImage(colorModel, raster, false, null);
+    }
+    return bufferToBufferedImage(rgbData);
+  }
+
+  /**
+   * Converts an RGB buffer to a new BufferedImage. The image is a detached snapshot that does not
+   * change with the buffer.
+   *
+   * @param rgbData the RGB buffer of the image
+   * @return the BufferedImage object of the buffer
+   */
+  public static BufferedImage bufferToBufferedImage(RgbBuffer rgbData) {
+    int height = rgbData.getHeight();
+    int width = rgbData.getWidth();
 
     BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 
     for (int i = 0; i < height; i++) {
       for (int j = 0; j < width; j++) {
-        int r = rgbData[i][j][0];
-        int g = rgbData[i][j][1];
-        int b = rgbData[i][j][2];
-
-        // color is stored in 1 integer, with the 4 bytes storing ARGB in that
-        // order. Each of r,g,b are stored in 8 bits (hence between 0 and 255).
-        // So we put them all in one integer by using bit-shifting << as below
-        int color = (r << 16) + (g << 8) + b;
-        output.setRGB(j, i, color);
+        // color is returned in 1 integer, with each of r,g,b stored in 8 bits
+        output.setRGB(j, i, rgbData.getRgb(i, j));
       }
     }
     return output;
   }
+
+  /**
+   * Converts a 3-D array representing an RGB image to a BufferedImage.
+   *
+   * @param rgbData the 3D array of integer values
+   * @return the BufferedImage object of the 3D array
+   */
+  public static BufferedImage arrayToBufferedImage(int[][][] rgbData) {
+    return bufferToBufferedImage(PackedRgbBuffer.fromArray(rgbData));
+  }
 }
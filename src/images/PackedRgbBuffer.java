@@ -0,0 +1,399 @@
+package images;
+
+/**
+ * A 24 bit RGB image stored as one packed 0xRRGGBB integer per pixel in a single flat array.
+ * Pixels are addressed using a row stride, so the pixel at (row, col) lives at index
+ * {@code offset + row * stride + col}. Every channel value held by the buffer is always within
+ * 0 to 255.
+ */
+public final class PackedRgbBuffer implements RgbBuffer {
+
+  private static final int MAX = 255;
+
+  private final int width;
+  private final int height;
+  private final int offset;
+  private final int stride;
+  private final int[] pixels;
+
+  /**
+   * Constructor for an all black buffer with the given dimensions.
+   *
+   * @param width  the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @throws IllegalArgumentException if either dimension is negative or the image has more
+   *                                  pixels than an array can hold
+   */
+  public PackedRgbBuffer(int width, int height) throws IllegalArgumentException {
+    this(checkedPixels(width, height), width, height, 0, width, true);
+  }
+
+  /**
+   * Constructor for a buffer backed by an existing pixel array. The array is not copied. Since
+   * the array comes from outside, any bits above the lowest 24 of each pixel are cleared first.
+   *
+   * @param pixels the packed pixel array
+   * @param width  the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @param offset index of the first pixel of the first row
+   * @param stride distance between the first pixels of two consecutive rows
+   * @throws IllegalArgumentException if the layout does not fit inside the array
+   */
+  public PackedRgbBuffer(int[] pixels, int width, int height, int offset, int stride)
+          throws IllegalArgumentException {
+    this(pixels, width, height, offset, stride, false);
+  }
+
+  /**
+   * Constructor for a buffer backed by an existing pixel array. The array is not copied. When the
+   * caller has validated that every pixel is already a packed 0xRRGGBB value the array is used as
+   * is, otherwise any bits above the lowest 24 of each pixel are cleared first.
+   *
+   * @param pixels    the packed pixel array
+   * @param width     the width of the image in pixels
+   * @param height    the height of the image in pixels
+   * @param offset    index of the first pixel of the first row
+   * @param stride    distance between the first pixels of two consecutive rows
+   * @param validated whether every pixel in the addressed area is known to be in range
+   * @throws IllegalArgumentException if the layout does not fit inside the array
+   */
+  public PackedRgbBuffer(int[] pixels, int width, int height, int offset, int stride,
+                         boolean validated) throws IllegalArgumentException {
+    if (pixels == null) {
+      throw new IllegalArgumentException("Pixel array can't be null.");
+    }
+    if (width < 0 || height < 0 || offset < 0 || stride < width) {
+      throw new IllegalArgumentException("Invalid buffer layout.");
+    }
+    if (height > 0 && (long) offset + (long) (height - 1) * stride + width > pixels.length) {
+      throw new IllegalArgumentException("Buffer layout exceeds the pixel array.");
+    }
+    this.pixels = pixels;
+    this.width = width;
+    this.height = height;
+    this.offset = offset;
+    this.stride = stride;
+    if (!validated) {
+      for (int r = 0; r < height; r++) {
+        int index = indexOf(r, 0);
+        for (int c = 0; c < width; c++) {
+          pixels[index + c] &= 0xFFFFFF;
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates a buffer from a 3D array with depth of 3, one for each color channel. Values outside
+   * of 0 to 255 are clamped, with bands of rows clamped in parallel.
+   *
+   * @param rgbArray a 3D array with depth of 3, one for each color channel
+   * @return a new buffer holding the same image
+   * @throws IllegalArgumentException if the array is null
+   */
+  public static PackedRgbBuffer fromArray(int[][][] rgbArray) throws IllegalArgumentException {
+    if (rgbArray == null) {
+      throw new IllegalArgumentException("Invalid image data provided");
+    }
+    int height = rgbArray.length;
+    int width = height == 0 ? 0 : rgbArray[0].length;
+    PackedRgbBuffer buffer = new PackedRgbBuffer(width, height);
+    RowBands.forEach(height, (band, startRow, endRow) -> {
+      for (int r = startRow; r < endRow; r++) {
+        for (int c = 0; c < width; c++) {
+          buffer.setRgb(r, c, rgbArray[r][c][0], rgbArray[r][c][1], rgbArray[r][c][2]);
+        }
+      }
+    });
+    return buffer;
+  }
+
+  /**
+   * Returns the image as a newly allocated 3D array. The first dimension is the row, the second
+   * the column and the third the red, green and blue channels.
+   *
+   * @return a 3D array copy of this image
+   */
+  @Override
+  public int[][][] toArray() {
+    int[][][] rgbArray = new int[this.height][this.width][3];
+    for (int r = 0; r < this.height; r++) {
+      int index = indexOf(r, 0);
+      for (int c = 0; c < this.width; c++) {
+        int rgb = this.pixels[index++];
+        rgbArray[r][c][0] = red(rgb);
+        rgbArray[r][c][1] = green(rgb);
+        rgbArray[r][c][2] = blue(rgb);
+      }
+    }
+    return rgbArray;
+  }
+
+  /**
+   * Returns the width of the image in pixels.
+   *
+   * @return the width of the image in pixels
+   */
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns the height of the image in pixels.
+   *
+   * @return the height of the image in pixels
+   */
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Returns the index of the first pixel of the first row in the pixel array.
+   *
+   * @return the index of the first pixel
+   */
+  public int getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * Returns the distance between the first pixels of two consecutive rows.
+   *
+   * @return the row stride of the pixel array
+   */
+  public int getStride() {
+    return this.stride;
+  }
+
+  /**
+   * Returns the backing pixel array. Changes to the array are visible in this buffer.
+   *
+   * @return the backing pixel array
+   */
+  public int[] getPixels() {
+    return this.pixels;
+  }
+
+  /**
+   * Returns the index in the pixel array of the pixel at the given row and column.
+   *
+   * @param row the row of the pixel
+   * @param col the column of the pixel
+   * @return the index of the pixel in the pixel array
+   */
+  public int indexOf(int row, int col) {
+    return this.offset + row * this.stride + col;
+  }
+
+  /**
+   * Returns the packed 0xRRGGBB value of the pixel at the given row and column.
+   *
+   * @param row the row of the pixel
+   * @param col the column of the pixel
+   * @return the packed value of the pixel
+   */
+  @Override
+  public int getRgb(int row, int col) {
+    return this.pixels[indexOf(row, col)];
+  }
+
+  /**
+   * Returns one channel of the pixel at the given row and column.
+   *
+   * @param row     the row of the pixel
+   * @param col     the column of the pixel
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @return the value of the channel between 0 and 255
+   */
+  @Override
+  public int getChannel(int row, int col, int channel) {
+    return (getRgb(row, col) >> (16 - 8 * channel)) & MAX;
+  }
+
+  /**
+   * Sets the pixel at the given row and column to a packed 0xRRGGBB value. Any bits above the
+   * lowest 24 are discarded.
+   *
+   * @param row the row of the pixel
+   * @param col the column of the pixel
+   * @param rgb the packed value of the pixel
+   */
+  @Override
+  public void setRgb(int row, int col, int rgb) {
+    this.pixels[indexOf(row, col)] = rgb & 0xFFFFFF;
+  }
+
+  /**
+   * Sets the pixel at the given row and column, saturating each channel to 0 to 255.
+   *
+   * @param row   the row of the pixel
+   * @param col   the column of the pixel
+   * @param red   the red value of the pixel
+   * @param green the green value of the pixel
+   * @param blue  the blue value of the pixel
+   */
+  @Override
+  public void setRgb(int row, int col, int red, int green, int blue) {
+    this.pixels[indexOf(row, col)] = pack(red, green, blue);
+  }
+
+  /**
+   * Copies one row of a single channel into an array.
+   *
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @param row     the row to read
+   * @param dst     array of at least width entries to copy the values into
+   */
+  @Override
+  public void readChannelRow(int channel, int row, int[] dst) {
+    int shift = 16 - 8 * channel;
+    int index = indexOf(row, 0);
+    for (int c = 0; c < this.width; c++) {
+      dst[c] = (this.pixels[index + c] >> shift) & MAX;
+    }
+  }
+
+  /**
+   * Overwrites one row of a single channel, saturating each value to 0 to 255 as it is stored.
+   *
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @param row     the row to write
+   * @param src     array of at least width entries holding the new values
+   */
+  @Override
+  public void writeChannelRow(int channel, int row, int[] src) {
+    int shift = 16 - 8 * channel;
+    int mask = ~(MAX << shift);
+    int index = indexOf(row, 0);
+    for (int c = 0; c < this.width; c++) {
+      this.pixels[index + c] = (this.pixels[index + c] & mask) | (saturate(src[c]) << shift);
+    }
+  }
+
+  /**
+   * Overwrites one row with packed 0xRRGGBB values. Any bits above the lowest 24 are discarded.
+   *
+   * @param row the row to write
+   * @param src array of at least width packed values
+   */
+  @Override
+  public void writeRgbRow(int row, int[] src) {
+    int index = indexOf(row, 0);
+    for (int c = 0; c < this.width; c++) {
+      this.pixels[index + c] = src[c] & 0xFFFFFF;
+    }
+  }
+
+  /**
+   * Returns the number of bytes used by the backing pixel array.
+   *
+   * @return the size of the pixel storage in bytes
+   */
+  @Override
+  public long getSizeInBytes() {
+    return 4L * this.pixels.length;
+  }
+
+  /**
+   * Creates a new all black packed buffer.
+   *
+   * @param width  the width of the new image in pixels
+   * @param height the height of the new image in pixels
+   * @return a new all black buffer
+   */
+  @Override
+  public PackedRgbBuffer createBlank(int width, int height) {
+    return new PackedRgbBuffer(width, height);
+  }
+
+  /**
+   * Returns a copy of this buffer with its own tightly packed pixel array.
+   *
+   * @return a copy of this buffer
+   */
+  @Override
+  public PackedRgbBuffer copy() {
+    PackedRgbBuffer copy = new PackedRgbBuffer(this.width, this.height);
+    for (int r = 0; r < this.height; r++) {
+      System.arraycopy(this.pixels, indexOf(r, 0), copy.pixels, copy.indexOf(r, 0), this.width);
+    }
+    return copy;
+  }
+
+  /**
+   * Packs three channel values into a single 0xRRGGBB value, saturating each to 0 to 255.
+   *
+   * @param red   the red value
+   * @param green the green value
+   * @param blue  the blue value
+   * @return the packed value
+   */
+  public static int pack(int red, int green, int blue) {
+    return (saturate(red) << 16) | (saturate(green) << 8) | saturate(blue);
+  }
+
+  /**
+   * Returns the red channel of a packed 0xRRGGBB value.
+   *
+   * @param rgb the packed value
+   * @return the red channel between 0 and 255
+   */
+  public static int red(int rgb) {
+    return (rgb >> 16) & MAX;
+  }
+
+  /**
+   * Returns the green channel of a packed 0xRRGGBB value.
+   *
+   * @param rgb the packed value
+   * @return the green channel between 0 and 255
+   */
+  public static int green(int rgb) {
+    return (rgb >> 8) & MAX;
+  }
+
+  /**
+   * Returns the blue channel of a packed 0xRRGGBB value.
+   *
+   * @param rgb the packed value
+   * @return the blue channel between 0 and 255
+   */
+  public static int blue(int rgb) {
+    return rgb & MAX;
+  }
+
+  /**
+   * Saturates a channel value to 0 to 255 without branching, so stores that go through it are
+   * always in range and never need a separate clamping pass.
+   *
+   * @param value the channel value
+   * @return 0 for negative values, 255 for values above 255 and the value itself otherwise
+   */
+  public static int saturate(int value) {
+    // Negative values have every bit of (value >> 31) set, so the mask clears them to 0
+    int positive = value & ~(value >> 31);
+    // (MAX - positive) is negative only above 255, then the or sets all bits before masking
+    return (positive | ((MAX - positive) >> 31)) & MAX;
+  }
+
+  /**
+   * Private method for allocating the pixels of a buffer after checking its dimensions.
+   *
+   * @param width  the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @return an array of one int for each pixel
+   * @throws IllegalArgumentException if either dimension is negative or the image has more
+   *                                  pixels than an array can hold
+   */
+  private static int[] checkedPixels(int width, int height) throws IllegalArgumentException {
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("Image dimensions can't be negative.");
+    }
+    if ((long) width * height > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image too large.");
+    }
+    return new int[width * height];
+  }
+}
@@ -0,0 +1,250 @@
+package images;
+
+/**
+ * A 24 bit RGB image stored as three separate byte planes, one for each color channel. Each plane
+ * holds width * height unsigned values in row order. This uses a quarter of the memory of an int
+ * per channel and keeps every channel contiguous, which suits filters that process one channel at a
+ * time.
+ */
+public final class PlanarRgbBuffer implements RgbBuffer {
+
+  private static final int MAX = 255;
+
+  private final int width;
+  private final int height;
+  private final byte[][] planes;
+
+  /**
+   * Constructor for an all black buffer with the given dimensions.
+   *
+   * @param width  the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @throws IllegalArgumentException if either dimension is negative or the image has more
+   *                                  pixels than an array can hold
+   */
+  public PlanarRgbBuffer(int width, int height) throws IllegalArgumentException {
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("Image dimensions can't be negative.");
+    }
+    if ((long) width * height > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image too large.");
+    }
+    this.width = width;
+    this.height = height;
+    this.planes = new byte[3][width * height];
+  }
+
+  /**
+   * Creates a planar buffer holding the same image as another buffer.
+   *
+   * @param image the image to copy
+   * @return a new planar buffer holding the same image
+   */
+  public static PlanarRgbBuffer fromBuffer(RgbBuffer image) {
+    PlanarRgbBuffer buffer = new PlanarRgbBuffer(image.getWidth(), image.getHeight());
+    int[] row = new int[image.getWidth()];
+    for (int z = 0; z < 3; z++) {
+      for (int r = 0; r < image.getHeight(); r++) {
+        image.readChannelRow(z, r, row);
+        buffer.writeChannelRow(z, r, row);
+      }
+    }
+    return buffer;
+  }
+
+  /**
+   * Returns the width of the image in pixels.
+   *
+   * @return the width of the image in pixels
+   */
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Returns the height of the image in pixels.
+   *
+   * @return the height of the image in pixels
+   */
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  /**
+   * Returns the backing plane of a single channel. Changes to the array are visible in this
+   * buffer.
+   *
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @return the backing plane of the channel
+   */
+  public byte[] getPlane(int channel) {
+    return this.planes[channel];
+  }
+
+  /**
+   * Returns the packed 0xRRGGBB value of the pixel at the given row and column.
+   *
+   * @param row the row of the pixel
+   * @param col the column of the pixel
+   * @return the packed value of the pixel
+   */
+  @Override
+  public int getRgb(int row, int col) {
+    int index = row * this.width + col;
+    return ((this.planes[0][index] & MAX) << 16)
+            | ((this.planes[1][index] & MAX) << 8)
+            | (this.planes[2][index] & MAX);
+  }
+
+  /**
+   * Returns one channel of the pixel at the given row and column.
+   *
+   * @param row     the row of the pixel
+   * @param col     the column of the pixel
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @return the value of the channel between 0 and 255
+   */
+  @Override
+  public int getChannel(int row, int col, int channel) {
+    return this.planes[channel][row * this.width + col] & MAX;
+  }
+
+  /**
+   * Sets the pixel at the given row and column to a packed 0xRRGGBB value. Any bits above the
+   * lowest 24 are discarded.
+   *
+   * @param row the row of the pixel
+   * @param col the column of the pixel
+   * @param rgb the packed value of the pixel
+   */
+  @Override
+  public void setRgb(int row, int col, int rgb) {
+    int index = row * this.width + col;
+    this.planes[0][index] = (byte) (rgb >> 16);
+    this.planes[1][index] = (byte) (rgb >> 8);
+    this.planes[2][index] = (byte) rgb;
+  }
+
+  /**
+   * Sets the pixel at the given row and column, saturating each channel to 0 to 255.
+   *
+   * @param row   the row of the pixel
+   * @param col   the column of the pixel
+   * @param red   the red value of the pixel
+   * @param green the green value of the pixel
+   * @param blue  the blue value of the pixel
+   */
+  @Override
+  public void setRgb(int row, int col, int red, int green, int blue) {
+    setRgb(row, col, PackedRgbBuffer.pack(red, green, blue));
+  }
+
+  /**
+   * Copies one row of a single channel into an array.
+   *
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @param row     the row to read
+   * @param dst     array of at least width entries to copy the values into
+   */
+  @Override
+  public void readChannelRow(int channel, int row, int[] dst) {
+    byte[] plane = this.planes[channel];
+    int index = row * this.width;
+    for (int c = 0; c < this.width; c++) {
+      dst[c] = plane[index + c] & MAX;
+    }
+  }
+
+  /**
+   * Overwrites one row of a single channel, saturating each value to 0 to 255 as it is stored.
+   *
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @param row     the row to write
+   * @param src     array of at least width entries holding the new values
+   */
+  @Override
+  public void writeChannelRow(int channel, int row, int[] src) {
+    byte[] plane = this.planes[channel];
+    int index = row * this.width;
+    for (int c = 0; c < this.width; c++) {
+      plane[index + c] = (byte) PackedRgbBuffer.saturate(src[c]);
+    }
+  }
+
+  /**
+   * Overwrites one row with packed 0xRRGGBB values. Any bits above the lowest 24 are discarded.
+   *
+   * @param row the row to write
+   * @param src array of at least width packed values
+   */
+  @Override
+  public void writeRgbRow(int row, int[] src) {
+    byte[] red = this.planes[0];
+    byte[] green = this.planes[1];
+    byte[] blue = this.planes[2];
+    int index = row * this.width;
+    for (int c = 0; c < this.width; c++) {
+      int rgb = src[c];
+      red[index + c] = (byte) (rgb >> 16);
+      green[index + c] = (byte) (rgb >> 8);
+      blue[index + c] = (byte) rgb;
+    }
+  }
+
+  /**
+   * Returns the number of bytes used by the three planes.
+   *
+   * @return the size of the pixel storage in bytes
+   */
+  @Override
+  public long getSizeInBytes() {
+    return 3L * this.width * this.height;
+  }
+
+  /**
+   * Creates a new all black planar buffer.
+   *
+   * @param width  the width of the new image in pixels
+   * @param height the height of the new image in pixels
+   * @return a new all black buffer
+   */
+  @Override
+  public PlanarRgbBuffer createBlank(int width, int height) {
+    return new PlanarRgbBuffer(width, height);
+  }
+
+  /**
+   * Returns a copy of this buffer with its own planes.
+   *
+   * @return a copy of this buffer
+   */
+  @Override
+  public PlanarRgbBuffer copy() {
+    PlanarRgbBuffer copy = new PlanarRgbBuffer(this.width, this.height);
+    for (int z = 0; z < 3; z++) {
+      System.arraycopy(this.planes[z], 0, copy.planes[z], 0, this.planes[z].length);
+    }
+    return copy;
+  }
+
+  /**
+   * Returns the image as a newly allocated 3D array. The first dimension is the row, the second
+   * the column and the third the red, green and blue channels.
+   *
+   * @return a 3D array copy of this image
+   */
+  @Override
+  public int[][][] toArray() {
+    int[][][] rgbArray = new int[this.height][this.width][3];
+    for (int r = 0; r < this.height; r++) {
+      for (int c = 0; c < this.width; c++) {
+        for (int z = 0; z < 3; z++) {
+          rgbArray[r][c][z] = getChannel(r, c, z);
+        }
+      }
+    }
+    return rgbArray;
+  }
+}
@@ -0,0 +1,78 @@
+package images;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sequence of operations that each change a pixel based only on its own value, color matrices
+ * and histogram equalization, to be applied together in one pass over the image. Applying the
+ * chain gives exactly the same image as applying its steps one at a time, since every step is
+ * rounded and clamped to 0 to 255 as it would be when stored.
+ *
+ * <p>Histogram equalization depends on the histogram of the image it is applied to, so it is only
+ * turned into a table of new channel values when the chain is applied, from the histogram of what
+ * the steps before it make of the image. Chains are immutable.
+ */
+final class PointChain {
+
+  // The color matrix of each step in order, or null where the step equalizes the histogram
+  final List<CompiledColorMatrix> steps;
+
+  /**
+   * Private constructor for a chain of the given steps, which are kept without copying.
+   *
+   * @param steps the steps of the chain
+   */
+  private PointChain(List<CompiledColorMatrix> steps) {
+    this.steps = Collections.unmodifiableList(steps);
+  }
+
+  /**
+   * Returns a chain of a single color matrix.
+   *
+   * @param matrix the compiled color transformation matrix
+   * @return the chain applying the matrix
+   */
+  static PointChain of(CompiledColorMatrix matrix) {
+    return new PointChain(Collections.singletonList(matrix));
+  }
+
+  /**
+   * Returns a chain of a single histogram equalization.
+   *
+   * @return the chain equalizing the histogram of each channel
+   */
+  static PointChain equalization() {
+    return new PointChain(Collections.singletonList(null));
+  }
+
+  /**
+   * Returns the chain applying the steps of this chain followed by those of another.
+   *
+   * @param next the chain applied after this one
+   * @return the chain of both
+   */
+  PointChain then(PointChain next) {
+    List<CompiledColorMatrix> combined = new ArrayList<>(this.steps);
+    combined.addAll(next.steps);
+    return new PointChain(combined);
+  }
+
+  /**
+   * Returns a summary of the steps of the chain.
+   *
+   * @return a summary of the chain
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (CompiledColorMatrix step : this.steps) {
+      if (builder.length() > 0) {
+        builder.append(", ");
+      }
+      builder.append(step == null ? "equalize" : "matrix");
+    }
+    return String.format("point chain of %d steps: %s", this.steps.size(), builder);
+  }
+}
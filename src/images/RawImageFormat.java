@@ -0,0 +1,343 @@
+package images;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes the uncompressed .iem image format, meant for intermediate images that are
+ * saved and loaded again. Since nothing has to be compressed or decoded, saving and loading take
+ * about as long as copying the pixels.
+ *
+ * <p>A file starts with a 16 byte header of four little endian integers: the magic number, the
+ * layout, the width and the height. The pixels follow in the layout of the buffer that was
+ * written, either one little endian 0x00RRGGBB integer per pixel in row order, or a red, a green
+ * and a blue plane of one byte per pixel.
+ */
+final class RawImageFormat {
+
+  static final String EXTENSION = ".iem";
+
+  private static final int MAGIC = 0x314D4549;
+  private static final int PACKED = 0;
+  private static final int PLANAR = 1;
+  private static final int HEADER_BYTES = 16;
+  // Mappings and writes are done in chunks of whole rows of at most this many bytes
+  private static final int CHUNK_BYTES = 1 << 24;
+
+  private RawImageFormat() {
+  }
+
+  /**
+   * Returns whether a file name has the extension of the raw format.
+   *
+   * @param filename the name of the file
+   * @return true if the file is a raw image
+   */
+  static boolean isRawFile(String filename) {
+    return filename.toLowerCase().endsWith(EXTENSION);
+  }
+
+  /**
+   * Writes an image to a file. The pixels are written as they are stored in the buffer.
+   *
+   * @param rgbData  the image to write
+   * @param filename the name of the file to write the image to
+   * @throws IOException if the file can't be written
+   */
+  static void write(RgbBuffer rgbData, String filename) throws IOException {
+    int width = rgbData.getWidth();
+    int height = rgbData.getHeight();
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(rgbData instanceof PlanarRgbBuffer ? PLANAR : PACKED)
+              .putInt(width).putInt(height).flip();
+      writeFully(channel, header);
+
+      if (rgbData instanceof PlanarRgbBuffer) {
+        for (int z = 0; z < 3; z++) {
+          writeFully(channel, ByteBuffer.wrap(((PlanarRgbBuffer) rgbData).getPlane(z)));
+        }
+        return;
+      }
+      int rowsPerChunk = rowsPerChunk(4L * width);
+      ByteBuffer chunk = ByteBuffer.allocateDirect(rowsPerChunk * width * 4)
+              .order(ByteOrder.LITTLE_ENDIAN);
+      IntBuffer chunkInts = chunk.asIntBuffer();
+      int[] row = new int[width];
+      for (int r = 0; r < height; r += rowsPerChunk) {
+        int rows = Math.min(rowsPerChunk, height - r);
+        chunkInts.clear();
+        if (rgbData instanceof PackedRgbBuffer) {
+          PackedRgbBuffer packed = (PackedRgbBuffer) rgbData;
+          for (int i = 0; i < rows; i++) {
+            chunkInts.put(packed.getPixels(), packed.getOffset() + (r + i) * packed.getStride(),
+                    width);
+          }
+        } else {
+          for (int i = 0; i < rows; i++) {
+            for (int c = 0; c < width; c++) {
+              row[c] = rgbData.getRgb(r + i, c);
+            }
+            chunkInts.put(row);
+          }
+        }
+        chunk.clear().limit(rows * width * 4);
+        writeFully(channel, chunk);
+      }
+    }
+  }
+
+  /**
+   * Reads the dimensions of an image from the header of a file.
+   *
+   * @param filename the name of the file containing the image
+   * @return the information about the image
+   * @throws IOException if the file can't be read
+   * @throws IllegalArgumentException if the file is not a raw image
+   */
+  static ImageInfo probe(String filename) throws IOException, IllegalArgumentException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      int[] header = readHeader(channel);
+      return new ImageInfo(header[1], header[2], 3, EXTENSION.substring(1));
+    }
+  }
+
+  /**
+   * Reads an image, or part of it, from a file. A whole image is mapped into memory and copied
+   * into the buffer in bulk, a region or subsampled image only reads the rows it keeps.
+   *
+   * @param filename        the name of the file containing the image
+   * @param region          the region of the image to read in pixels, or null for all of it
+   * @param subsampling     the distance between kept pixels in both directions, 1 to keep all
+   * @param planarThreshold the number of pixels from which a planar buffer is used
+   * @return an RGB buffer of the region of the image
+   * @throws IOException if the file can't be read
+   * @throws IllegalArgumentException if the file is not a raw image or the region is outside it
+   */
+  static RgbBuffer read(String filename, Rectangle region, int subsampling, long planarThreshold)
+          throws IOException, IllegalArgumentException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      int[] header = readHeader(channel);
+      boolean isPlanar = header[0] == PLANAR;
+      int width = header[1];
+      int height = header[2];
+      long payloadBytes = (isPlanar ? 3L : 4L) * width * height;
+      if (channel.size() < HEADER_BYTES + payloadBytes) {
+        throw new IllegalArgumentException("Raw image file is truncated.");
+      }
+
+      Rectangle bounds = new Rectangle(0, 0, width, height);
+      Rectangle source = region == null ? bounds : region.intersection(bounds);
+      if (source.isEmpty()) {
+        throw new IllegalArgumentException("Region to read is outside the image.");
+      }
+      if (source.equals(bounds) && subsampling == 1) {
+        RgbBuffer image = isPlanar ? mapPlanar(channel, width, height)
+                : mapPacked(channel, width, height);
+        boolean wantsPlanar = (long) width * height >= planarThreshold;
+        if (wantsPlanar == isPlanar) {
+          return image;
+        }
+        return wantsPlanar ? PlanarRgbBuffer.fromBuffer(image) : toPacked(image);
+      }
+      return readSubsampled(channel, isPlanar, width, height, source, subsampling,
+              planarThreshold);
+    }
+  }
+
+  /**
+   * Maps the pixels of a packed file and copies them into a new packed buffer.
+   *
+   * @param channel the channel of the file
+   * @param width   the width of the image in pixels
+   * @param height  the height of the image in pixels
+   * @return the image
+   * @throws IOException if the file can't be read
+   */
+  private static PackedRgbBuffer mapPacked(FileChannel channel, int width, int height)
+          throws IOException {
+    int[] pixels = new int[width * height];
+    int rowsPerChunk = rowsPerChunk(4L * width);
+    for (int r = 0; r < height; r += rowsPerChunk) {
+      int rows = Math.min(rowsPerChunk, height - r);
+      MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+              HEADER_BYTES + 4L * r * width, 4L * rows * width);
+      chunk.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(pixels, r * width, rows * width);
+    }
+    // The file comes from outside, so the buffer clears any bits above the lowest 24
+    return new PackedRgbBuffer(pixels, width, height, 0, width);
+  }
+
+  /**
+   * Maps the planes of a planar file and copies them into a new planar buffer.
+   *
+   * @param channel the channel of the file
+   * @param width   the width of the image in pixels
+   * @param height  the height of the image in pixels
+   * @return the image
+   * @throws IOException if the file can't be read
+   */
+  private static PlanarRgbBuffer mapPlanar(FileChannel channel, int width, int height)
+          throws IOException {
+    PlanarRgbBuffer image = new PlanarRgbBuffer(width, height);
+    int rowsPerChunk = rowsPerChunk(width);
+    for (int z = 0; z < 3; z++) {
+      byte[] plane = image.getPlane(z);
+      long planeStart = HEADER_BYTES + (long) z * width * height;
+      for (int r = 0; r < height; r += rowsPerChunk) {
+        int rows = Math.min(rowsPerChunk, height - r);
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                planeStart + (long) r * width, (long) rows * width);
+        chunk.get(plane, r * width, rows * width);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Reads a region of an image keeping every few pixels, reading only the rows that are kept.
+   *
+   * @param channel         the channel of the file
+   * @param isPlanar        whether the file holds planes
+   * @param width           the width of the image in pixels
+   * @param height          the height of the image in pixels
+   * @param source          the region to read, inside the image
+   * @param subsampling     the distance between kept pixels in both directions
+   * @param planarThreshold the number of pixels from which a planar buffer is used
+   * @return the region of the image
+   * @throws IOException if the file can't be read
+   */
+  private static RgbBuffer readSubsampled(FileChannel channel, boolean isPlanar, int width,
+                                          int height, Rectangle source, int subsampling,
+                                          long planarThreshold) throws IOException {
+    int resultWidth = (source.width + subsampling - 1) / subsampling;
+    int resultHeight = (source.height + subsampling - 1) / subsampling;
+    RgbBuffer result;
+    if ((long) resultWidth * resultHeight >= planarThreshold) {
+      result = new PlanarRgbBuffer(resultWidth, resultHeight);
+    } else {
+      result = new PackedRgbBuffer(resultWidth, resultHeight);
+    }
+
+    ByteBuffer sourceRow = ByteBuffer.allocate(source.width * (isPlanar ? 1 : 4))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    int[] row = new int[resultWidth];
+    for (int r = 0; r < resultHeight; r++) {
+      long pixel = (long) (source.y + r * subsampling) * width + source.x;
+      if (isPlanar) {
+        for (int c = 0; c < resultWidth; c++) {
+          row[c] = 0;
+        }
+        for (int z = 0; z < 3; z++) {
+          readFully(channel, sourceRow, HEADER_BYTES + (long) z * width * height + pixel);
+          int shift = 16 - 8 * z;
+          for (int c = 0; c < resultWidth; c++) {
+            row[c] |= (sourceRow.get(c * subsampling) & 0xFF) << shift;
+          }
+        }
+      } else {
+        readFully(channel, sourceRow, HEADER_BYTES + 4 * pixel);
+        for (int c = 0; c < resultWidth; c++) {
+          row[c] = sourceRow.getInt(4 * c * subsampling);
+        }
+      }
+      result.writeRgbRow(r, row);
+    }
+    return result;
+  }
+
+  /**
+   * Converts an image to a packed buffer.
+   *
+   * @param image the image to convert
+   * @return a packed buffer holding the same image
+   */
+  private static PackedRgbBuffer toPacked(RgbBuffer image) {
+    PackedRgbBuffer packed = new PackedRgbBuffer(image.getWidth(), image.getHeight());
+    int[] row = new int[image.getWidth()];
+    for (int r = 0; r < image.getHeight(); r++) {
+      for (int c = 0; c < row.length; c++) {
+        row[c] = image.getRgb(r, c);
+      }
+      packed.writeRgbRow(r, row);
+    }
+    return packed;
+  }
+
+  /**
+   * Reads and checks the header of a file.
+   *
+   * @param channel the channel of the file
+   * @return the layout, width and height of the image
+   * @throws IOException if the file can't be read
+   * @throws IllegalArgumentException if the file is not a raw image
+   */
+  private static int[] readHeader(FileChannel channel) throws IOException,
+          IllegalArgumentException {
+    if (channel.size() < HEADER_BYTES) {
+      throw new IllegalArgumentException("File does not contain a raw image.");
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(channel, header, 0);
+    int layout = header.getInt(4);
+    int width = header.getInt(8);
+    int height = header.getInt(12);
+    if (header.getInt(0) != MAGIC || (layout != PACKED && layout != PLANAR)) {
+      throw new IllegalArgumentException("File does not contain a raw image.");
+    }
+    if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Raw image dimensions are invalid.");
+    }
+    return new int[] {layout, width, height};
+  }
+
+  /**
+   * Returns how many rows of the given size fit in a chunk, at least one.
+   *
+   * @param rowBytes the size of a row in bytes
+   * @return the number of rows in a chunk
+   */
+  private static int rowsPerChunk(long rowBytes) {
+    return (int) Math.max(1, CHUNK_BYTES / Math.max(1, rowBytes));
+  }
+
+  /**
+   * Writes everything remaining in a buffer to a channel.
+   *
+   * @param channel the channel to write to
+   * @param buffer  the bytes to write
+   * @throws IOException if the write fails
+   */
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Fills a buffer from a channel starting at a position in the file.
+   *
+   * @param channel  the channel to read from
+   * @param buffer   the buffer to fill
+   * @param position the position in the file to read from
+   * @throws IOException if the read fails or the file ends early
+   */
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+          throws IOException {
+    buffer.clear();
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new IOException("Raw image file ended early.");
+      }
+    }
+  }
+}
@@ -1,13 +1,23 @@
 package images;
 
+import java.util.function.BiConsumer;
+
 /**
- * Class that represents a valid 3D array containing a 24bit color image.
+ * Class that represents a valid 24bit color image. The pixels are held in an RGB buffer, the 3D
+ * array form is only produced on request for callers that still expect it.
+ *
+ * <p>The buffer is held through a reference counted handle. Operations never modify a buffer that
+ * someone else still holds, they write into a destination buffer borrowed from a pool that is then
+ * swapped in. The buffer replaced by a swap goes back to the pool to be reused as a later
+ * destination, so an operation needs at most the current buffer and one more.
+ *
+ * <p>Buffers are always in range since every store into them saturates, so swapping one in is
+ * constant time. Only 3D arrays, which come from outside and are not trusted, are clamped.
  */
 public class RgbArray24Bit {
 
-  private static int max = 255;
-  private int[][][] rgbArray;
-
+  private SharedRgbBuffer current;
+  private final RgbBufferPool pool;
 
   /**
    * Constructor for the 24 bit rgb array that will clamp values when relevant.
@@ -15,49 +25,133 @@ public class RgbArray24Bit {
    * @param rgbArray a 3D array with depth of 3, one for each color channel
    */
   public RgbArray24Bit(int[][][] rgbArray) {
-    for (int r = 0; r < rgbArray.length; r++) {
-      for (int c = 0; c < rgbArray[r].length; c++) {
-        for (int z = 0; z < rgbArray[r][c].length; z++) {
-          if (rgbArray[r][c][z] > max) {
-            rgbArray[r][c][z] = max;
-          }
-          if (rgbArray[r][c][z] < 0) {
-            rgbArray[r][c][z] = 0;
-          }
-        }
-      }
-    }
-    this.rgbArray = rgbArray;
+    this(PackedRgbBuffer.fromArray(rgbArray));
+  }
+
+  /**
+   * Constructor for the 24 bit rgb array using an existing buffer. Uses its own pool that keeps a
+   * single buffer of the same size for reuse.
+   *
+   * @param buffer the buffer holding the image
+   */
+  public RgbArray24Bit(RgbBuffer buffer) {
+    this(buffer, new RgbBufferPool(buffer.getSizeInBytes()));
+  }
+
+  /**
+   * Constructor for the 24 bit rgb array using an existing buffer and a pool shared with others.
+   *
+   * @param buffer the buffer holding the image
+   * @param pool   the pool destination buffers are borrowed from and returned to
+   */
+  public RgbArray24Bit(RgbBuffer buffer, RgbBufferPool pool) {
+    this.current = new SharedRgbBuffer(buffer);
+    this.pool = pool;
   }
 
   /**
-   * Returns the 3D array of RGB values of this image.
+   * Returns the 3D array of RGB values of this image. The array is a copy, changes to it are not
+   * reflected in this image.
    *
    * @return the 3D array of RGB values of this image
    */
   public int[][][] toArray() {
-    return this.rgbArray;
+    return getBuffer().toArray();
+  }
+
+  /**
+   * Returns the buffer holding this image. The buffer must be treated as read-only.
+   *
+   * @return the buffer holding this image
+   */
+  public RgbBuffer getBuffer() {
+    return this.current.getBuffer();
+  }
+
+  /**
+   * Returns a new reference to the buffer holding this image. The buffer will not be modified or
+   * reused by this image until the reference is released.
+   *
+   * @return a retained handle to the current buffer
+   */
+  public SharedRgbBuffer share() {
+    return this.current.retain();
+  }
+
+  /**
+   * Drops a reference obtained from {@link #share()}. The buffer goes back to the pool if it is no
+   * longer the current buffer and nobody else holds a reference to it.
+   *
+   * @param handle the handle returned by share
+   */
+  public void release(SharedRgbBuffer handle) {
+    if (handle.release() && handle != this.current) {
+      this.pool.recycle(handle.getBuffer());
+    }
   }
 
   /**
-   * Updates the current image by updating with a new array.
+   * Updates the current image by updating with a new array, clamping values when relevant.
    *
    * @param rgbArray new array to replace the previous array
    */
   public void updateArray(int[][][] rgbArray) {
-    for (int r = 0; r < rgbArray.length; r++) {
-      for (int c = 0; c < rgbArray[r].length; c++) {
-        for (int z = 0; z < rgbArray[r][c].length; z++) {
-          if (rgbArray[r][c][z] > max) {
-            rgbArray[r][c][z] = max;
-          }
-          if (rgbArray[r][c][z] < 0) {
-            rgbArray[r][c][z] = 0;
-          }
-        }
-      }
+    updateBuffer(PackedRgbBuffer.fromArray(rgbArray));
+  }
+
+  /**
+   * Updates the current image by swapping in a new buffer in constant time. No clamping is done
+   * since buffers are always in range. The previous buffer goes back to the pool if nobody else
+   * holds a reference to it.
+   *
+   * @param buffer new buffer to replace the previous buffer
+   */
+  public void updateBuffer(RgbBuffer buffer) {
+    RgbBuffer previous = this.current.getBuffer();
+    if (this.current.release() && previous != buffer) {
+      this.pool.recycle(previous);
+    }
+    this.current = new SharedRgbBuffer(buffer);
+  }
+
+  /**
+   * Applies an operation that reads the current buffer and fully overwrites a destination buffer
+   * of the same size, then swaps the destination in.
+   *
+   * @param operation the operation taking the source and the destination buffer
+   */
+  public void applyInto(BiConsumer<RgbBuffer, RgbBuffer> operation) {
+    RgbBuffer source = getBuffer();
+    RgbBuffer destination = takeDestination(source.getWidth(), source.getHeight());
+    operation.accept(source, destination);
+    updateBuffer(destination);
+  }
+
+  /**
+   * Applies an operation that can use the same buffer as both source and destination. The current
+   * buffer is modified directly unless it is shared, in which case the result is written to a
+   * separate destination instead.
+   *
+   * @param operation the operation taking the source and the destination buffer
+   */
+  public void applyInPlace(BiConsumer<RgbBuffer, RgbBuffer> operation) {
+    if (this.current.isShared()) {
+      applyInto(operation);
+      return;
     }
-    this.rgbArray = rgbArray;
+    operation.accept(getBuffer(), getBuffer());
+  }
+
+  /**
+   * Returns a buffer with the same layout as the current one to write a result into. A pooled
+   * buffer is reused when one of the right size is available, its contents are undefined.
+   *
+   * @param width  the width of the destination in pixels
+   * @param height the height of the destination in pixels
+   * @return a buffer that is not used by anyone else
+   */
+  private RgbBuffer takeDestination(int width, int height) {
+    return this.pool.borrow(getBuffer(), width, height);
   }
 
   /**
@@ -69,19 +163,13 @@ public class RgbArray24Bit {
   @Override
   public String toString() {
     StringBuilder result = new StringBuilder();
-    for (int r = 0; r < rgbArray.length; r++) {
-      for (int c = 0; c < rgbArray[r].length; c++) {
-        for (int z = 0; z < rgbArray[r][c].length; z++) {
-          if (z == 0) {
-            result.append("R: ");
-          } else if (z == 1) {
-            result.append("G: ");
-          } else if (z == 2) {
-            result.append("B: ");
-          }
-          result.append(String.format("%03d", rgbArray[r][c][z]));
-          result.append(' ');
-        }
+    RgbBuffer buffer = getBuffer();
+    for (int r = 0; r < buffer.getHeight(); r++) {
+      for (int c = 0; c < buffer.getWidth(); c++) {
+        int rgb = buffer.getRgb(r, c);
+        result.append(String.format("R: %03d ", PackedRgbBuffer.red(rgb)));
+        result.append(String.format("G: %03d ", PackedRgbBuffer.green(rgb)));
+        result.append(String.format("B: %03d ", PackedRgbBuffer.blue(rgb)));
       }
       result.append("\n");
     }
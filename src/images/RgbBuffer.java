@@ -0,0 +1,121 @@
+package images;
+
+/**
+ * Interface for a 24 bit RGB image held in memory. Every channel value held by the buffer is
+ * always within 0 to 255, since stores of unbounded values saturate as they are written. Pixels
+ * can be accessed one at a time as packed 0xRRGGBB values or one channel row at a time, which lets
+ * per-channel filters stream over a single plane.
+ */
+public interface RgbBuffer {
+
+  /**
+   * Returns the width of the image in pixels.
+   *
+   * @return the width of the image in pixels
+   */
+  public int getWidth();
+
+  /**
+   * Returns the height of the image in pixels.
+   *
+   * @return the height of the image in pixels
+   */
+  public int getHeight();
+
+  /**
+   * Returns the packed 0xRRGGBB value of the pixel at the given row and column.
+   *
+   * @param row the row of the pixel
+   * @param col the column of the pixel
+   * @return the packed value of the pixel
+   */
+  public int getRgb(int row, int col);
+
+  /**
+   * Returns one channel of the pixel at the given row and column.
+   *
+   * @param row     the row of the pixel
+   * @param col     the column of the pixel
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @return the value of the channel between 0 and 255
+   */
+  public int getChannel(int row, int col, int channel);
+
+  /**
+   * Sets the pixel at the given row and column to a packed 0xRRGGBB value. Any bits above the
+   * lowest 24 are discarded.
+   *
+   * @param row the row of the pixel
+   * @param col the column of the pixel
+   * @param rgb the packed value of the pixel
+   */
+  public void setRgb(int row, int col, int rgb);
+
+  /**
+   * Sets the pixel at the given row and column, saturating each channel to 0 to 255.
+   *
+   * @param row   the row of the pixel
+   * @param col   the column of the pixel
+   * @param red   the red value of the pixel
+   * @param green the green value of the pixel
+   * @param blue  the blue value of the pixel
+   */
+  public void setRgb(int row, int col, int red, int green, int blue);
+
+  /**
+   * Copies one row of a single channel into an array.
+   *
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @param row     the row to read
+   * @param dst     array of at least width entries to copy the values into
+   */
+  public void readChannelRow(int channel, int row, int[] dst);
+
+  /**
+   * Overwrites one row of a single channel, saturating each value to 0 to 255 as it is stored.
+   *
+   * @param channel 0 for red, 1 for green and 2 for blue
+   * @param row     the row to write
+   * @param src     array of at least width entries holding the new values
+   */
+  public void writeChannelRow(int channel, int row, int[] src);
+
+  /**
+   * Overwrites one row with packed 0xRRGGBB values. Any bits above the lowest 24 are discarded.
+   *
+   * @param row the row to write
+   * @param src array of at least width packed values
+   */
+  public void writeRgbRow(int row, int[] src);
+
+  /**
+   * Returns the number of bytes used to store the pixels of this buffer.
+   *
+   * @return the size of the pixel storage in bytes
+   */
+  public long getSizeInBytes();
+
+  /**
+   * Creates a new all black buffer with the same storage layout as this one.
+   *
+   * @param width  the width of the new image in pixels
+   * @param height the height of the new image in pixels
+   * @return a new all black buffer
+   */
+  public RgbBuffer createBlank(int width, int height);
+
+  /**
+   * Returns a copy of this buffer with the same storage layout.
+   *
+   * @return a copy of this buffer
+   */
+  public RgbBuffer copy();
+
+  /**
+   * Returns the image as a newly allocated 3D array. The first dimension is the row, the second
+   * the column and the third the red, green and blue channels.
+   *
+   * @return a 3D array copy of this image
+   */
+  public int[][][] toArray();
+}
@@ -0,0 +1,185 @@
+package images;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A pool of RGB buffers waiting to be reused as destinations for image operations. Buffers are
+ * kept in buckets by storage layout and size, so a borrowed buffer always has exactly the
+ * requested dimensions. The pool retains at most a fixed number of bytes, evicting the least
+ * recently used buckets first.
+ */
+public class RgbBufferPool {
+
+  private final long maxRetainedBytes;
+  private final Map<BucketKey, Deque<RgbBuffer>> buckets;
+  private long retainedBytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructor for a pool that retains at most the given number of bytes.
+   *
+   * @param maxRetainedBytes the most bytes of buffers the pool keeps at once
+   * @throws IllegalArgumentException if the limit is negative
+   */
+  public RgbBufferPool(long maxRetainedBytes) throws IllegalArgumentException {
+    if (maxRetainedBytes < 0) {
+      throw new IllegalArgumentException("Pool size can't be negative.");
+    }
+    this.maxRetainedBytes = maxRetainedBytes;
+    this.buckets = new LinkedHashMap<>(16, 0.75f, true);
+    this.retainedBytes = 0;
+    this.hits = 0;
+    this.misses = 0;
+  }
+
+  /**
+   * Borrows a buffer with the same storage layout as a template and the given dimensions. A pooled
+   * buffer is returned when one is available, its contents are undefined. Otherwise a new all
+   * black buffer is created.
+   *
+   * @param template a buffer with the wanted storage layout
+   * @param width    the width of the buffer in pixels
+   * @param height   the height of the buffer in pixels
+   * @return a buffer that is not used by anyone else
+   */
+  public synchronized RgbBuffer borrow(RgbBuffer template, int width, int height) {
+    Deque<RgbBuffer> bucket = this.buckets.get(new BucketKey(template.getClass(), width, height));
+    if (bucket != null && !bucket.isEmpty()) {
+      RgbBuffer buffer = bucket.pop();
+      this.retainedBytes -= buffer.getSizeInBytes();
+      this.hits++;
+      return buffer;
+    }
+    this.misses++;
+    return template.createBlank(width, height);
+  }
+
+  /**
+   * Gives a buffer back to the pool once nobody uses it anymore. Buffers that would take the pool
+   * over its limit evict older buffers, or are dropped if they are larger than the limit.
+   *
+   * @param buffer the buffer to give back
+   */
+  public synchronized void recycle(RgbBuffer buffer) {
+    long size = buffer.getSizeInBytes();
+    if (size > this.maxRetainedBytes) {
+      return;
+    }
+    evict(this.maxRetainedBytes - size);
+    this.buckets.computeIfAbsent(
+            new BucketKey(buffer.getClass(), buffer.getWidth(), buffer.getHeight()),
+            k -> new ArrayDeque<>()).push(buffer);
+    this.retainedBytes += size;
+  }
+
+  /**
+   * Drops every pooled buffer.
+   */
+  public synchronized void clear() {
+    evict(0);
+  }
+
+  /**
+   * Returns the number of borrows that were served by a pooled buffer.
+   *
+   * @return the number of pool hits
+   */
+  public synchronized long getHits() {
+    return this.hits;
+  }
+
+  /**
+   * Returns the number of borrows that had to create a new buffer.
+   *
+   * @return the number of pool misses
+   */
+  public synchronized long getMisses() {
+    return this.misses;
+  }
+
+  /**
+   * Returns the number of bytes of buffers currently held by the pool.
+   *
+   * @return the retained bytes
+   */
+  public synchronized long getRetainedBytes() {
+    return this.retainedBytes;
+  }
+
+  /**
+   * Returns the most bytes of buffers the pool keeps at once.
+   *
+   * @return the retained bytes limit
+   */
+  public long getMaxRetainedBytes() {
+    return this.maxRetainedBytes;
+  }
+
+  /**
+   * Returns a summary of the pool statistics.
+   *
+   * @return a summary of the pool statistics
+   */
+  @Override
+  public synchronized String toString() {
+    return String.format("hits: %d, misses: %d, retained bytes: %d of %d", this.hits, this.misses,
+            this.retainedBytes, this.maxRetainedBytes);
+  }
+
+  /**
+   * Drops buffers, least recently used buckets first, until at most the given bytes are retained.
+   *
+   * @param limit the most bytes to keep
+   */
+  private void evict(long limit) {
+    Iterator<Deque<RgbBuffer>> iterator = this.buckets.values().iterator();
+    while (this.retainedBytes > limit && iterator.hasNext()) {
+      Deque<RgbBuffer> bucket = iterator.next();
+      while (this.retainedBytes > limit && !bucket.isEmpty()) {
+        this.retainedBytes -= bucket.removeLast().getSizeInBytes();
+      }
+      if (bucket.isEmpty()) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Key of a bucket holding buffers of one storage layout and size.
+   */
+  private static final class BucketKey {
+    private final Class<?> layout;
+    private final int width;
+    private final int height;
+
+    private BucketKey(Class<?> layout, int width, int height) {
+      this.layout = layout;
+      this.width = width;
+      this.height = height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof BucketKey)) {
+        return false;
+      }
+      BucketKey other = (BucketKey) o;
+      return this.layout == other.layout && this.width == other.width
+              && this.height == other.height;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.layout, this.width, this.height);
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package images;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs work over the rows of an image split into bands of consecutive rows, in parallel on a
+ * shared fork/join pool. A band always covers whole rows of every channel, so two bands never
+ * write to the same pixel. Work split this way must give the same result however the rows are
+ * split, which keeps the output identical to running serially. Work that writes only to its own
+ * arrays can split the columns of an image the same way.
+ */
+final class RowBands {
+
+  /**
+   * Work done on one band of rows.
+   */
+  interface BandTask {
+
+    /**
+     * Does the work for one band of rows.
+     *
+     * @param band     the index of the band, counting from 0 at the top of the image
+     * @param startRow the first row of the band
+     * @param endRow   the row after the last row of the band
+     */
+    void run(int band, int startRow, int endRow);
+  }
+
+  // Fewest rows worth handing to a thread of their own, and how many bands each thread gets so
+  // that threads finishing early can take over work from slower ones
+  private static final int MIN_BAND_ROWS = 32;
+  private static final int BANDS_PER_THREAD = 4;
+
+  private static int parallelism = Runtime.getRuntime().availableProcessors();
+  private static ForkJoinPool pool;
+
+  // Private constructor
+  private RowBands() {
+  }
+
+  /**
+   * Sets how many threads image operations may use. The pool of the previous setting is shut down
+   * once its running work is done.
+   *
+   * @param threads the number of threads, 1 to run everything on the calling thread
+   * @throws IllegalArgumentException if the number of threads is less than 1
+   */
+  static synchronized void setParallelism(int threads) throws IllegalArgumentException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be at least 1.");
+    }
+    if (threads == parallelism) {
+      return;
+    }
+    if (pool != null) {
+      pool.shutdown();
+      pool = null;
+    }
+    parallelism = threads;
+  }
+
+  /**
+   * Returns how many threads image operations may use.
+   *
+   * @return the number of threads
+   */
+  static synchronized int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Returns how many bands the given number of rows is split into. Callers that keep a result per
+   * band size their arrays with this and pass the same count to {@link #forEach}.
+   *
+   * @param rows the number of rows of the image
+   * @return the number of bands, at least 1
+   */
+  static int bandCount(int rows) {
+    return bandCount(rows, MIN_BAND_ROWS);
+  }
+
+  /**
+   * Returns how many bands work on the given number of units is split into, when a band is worth
+   * handing to a thread of its own from the given number of units. Work whose units are larger
+   * than a row, such as strips of tiles, passes a smaller minimum than a band of rows needs.
+   *
+   * @param units        the number of units of work, rows or larger
+   * @param minBandUnits the fewest units worth a band of their own
+   * @return the number of bands, at least 1
+   */
+  static int bandCount(int units, int minBandUnits) {
+    int threads = getParallelism();
+    if (threads == 1) {
+      return 1;
+    }
+    int bands = Math.min((units + minBandUnits - 1) / minBandUnits, threads * BANDS_PER_THREAD);
+    return Math.max(bands, 1);
+  }
+
+  /**
+   * Runs a task on every band of rows and waits for all of them to finish. A single band is run
+   * on the calling thread.
+   *
+   * @param rows  the number of rows of the image
+   * @param bands the number of bands to split the rows into, from {@link #bandCount(int)}
+   * @param task  the work to do on each band
+   */
+  static void forEach(int rows, int bands, BandTask task) {
+    if (bands == 1) {
+      task.run(0, 0, rows);
+      return;
+    }
+    sharedPool().invoke(new BandAction(task, rows, bands, 0, bands));
+  }
+
+  /**
+   * Runs a task on every band of rows, with the number of bands chosen by
+   * {@link #bandCount(int)}.
+   *
+   * @param rows the number of rows of the image
+   * @param task the work to do on each band
+   */
+  static void forEach(int rows, BandTask task) {
+    forEach(rows, bandCount(rows), task);
+  }
+
+  /**
+   * Private method for returning the pool for the current parallelism, starting it on first use.
+   *
+   * @return the shared pool
+   */
+  private static synchronized ForkJoinPool sharedPool() {
+    if (pool == null) {
+      pool = new ForkJoinPool(parallelism);
+    }
+    return pool;
+  }
+
+  /**
+   * Action that runs a range of bands by splitting the range in halves until one band is left.
+   */
+  private static final class BandAction extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BandTask task;
+    private final int rows;
+    private final int bands;
+    private final int fromBand;
+    private final int toBand;
+
+    /**
+     * Constructor for the action running bands from fromBand up to but excluding toBand.
+     *
+     * @param task     the work to do on each band
+     * @param rows     the number of rows of the image
+     * @param bands    the number of bands the rows are split into
+     * @param fromBand the first band to run
+     * @param toBand   the band after the last band to run
+     */
+    private BandAction(BandTask task, int rows, int bands, int fromBand, int toBand) {
+      this.task = task;
+      this.rows = rows;
+      this.bands = bands;
+      this.fromBand = fromBand;
+      this.toBand = toBand;
+    }
+
+    /**
+     * Runs the band if there is one, otherwise splits the range and runs both halves.
+     */
+    @Override
+    protected void compute() {
+      if (this.toBand - this.fromBand == 1) {
+        this.task.run(this.fromBand, firstRow(this.fromBand), firstRow(this.fromBand + 1));
+        return;
+      }
+      int middle = (this.fromBand + this.toBand) >>> 1;
+      invokeAll(new BandAction(this.task, this.rows, this.bands, this.fromBand, middle),
+              new BandAction(this.task, this.rows, this.bands, middle, this.toBand));
+    }
+
+    /**
+     * Private method for finding the first row of a band. Rows are shared out as evenly as
+     * possible.
+     *
+     * @param band the index of the band
+     * @return the first row of the band
+     */
+    private int firstRow(int band) {
+      return (int) ((long) band * this.rows / this.bands);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package images;
+
+/**
+ * A reference counted handle to an RGB buffer that may be held by more than one owner. A buffer
+ * whose handle is shared must be treated as read-only, writers have to produce a new buffer
+ * instead. Once the last reference is released the buffer can be recycled by its creator.
+ */
+public final class SharedRgbBuffer {
+
+  private final RgbBuffer buffer;
+  private int references;
+
+  /**
+   * Constructor for a handle with a single reference held by the caller.
+   *
+   * @param buffer the buffer to share
+   * @throws IllegalArgumentException if the buffer is null
+   */
+  public SharedRgbBuffer(RgbBuffer buffer) throws IllegalArgumentException {
+    if (buffer == null) {
+      throw new IllegalArgumentException("Buffer can't be null.");
+    }
+    this.buffer = buffer;
+    this.references = 1;
+  }
+
+  /**
+   * Returns the shared buffer. The buffer must not be modified while the handle is shared.
+   *
+   * @return the shared buffer
+   */
+  public RgbBuffer getBuffer() {
+    return this.buffer;
+  }
+
+  /**
+   * Adds a reference to the buffer for a new owner.
+   *
+   * @return this handle
+   * @throws IllegalStateException if every reference was already released
+   */
+  public synchronized SharedRgbBuffer retain() throws IllegalStateException {
+    if (this.references == 0) {
+      throw new IllegalStateException("Buffer was already released.");
+    }
+    this.references++;
+    return this;
+  }
+
+  /**
+   * Drops a reference to the buffer.
+   *
+   * @return true if this was the last reference and the buffer is no longer used
+   * @throws IllegalStateException if every reference was already released
+   */
+  public synchronized boolean release() throws IllegalStateException {
+    if (this.references == 0) {
+      throw new IllegalStateException("Buffer was already released.");
+    }
+    this.references--;
+    return this.references == 0;
+  }
+
+  /**
+   * Returns whether more than one owner holds a reference to the buffer.
+   *
+   * @return true if the buffer is shared
+   */
+  public synchronized boolean isShared() {
+    return this.references > 1;
+  }
+}
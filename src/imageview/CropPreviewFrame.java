@@ -49,7 +49,7 @@ public class CropPreviewFrame extends JFrame {
     super("Crop");
     this.features = f;
     this.mainFrame = mainFrame;
-    BufferedImage img = f.getBufferedImage();
+    BufferedImage img = f.getBufferedImageSnapshot();
 
     // Setup frame
     setSize(img.getWidth(), img.getHeight());
@@ -174,7 +174,7 @@ public class CropPreviewFrame extends JFrame {
    */
   private void addButtonListeners(Features f) {
     resetButton.addActionListener(l -> {
-      this.cropLabel.setIcon(new ImageIcon(f.getBufferedImage()));
+      this.cropLabel.setIcon(new ImageIcon(f.getBufferedImageSnapshot()));
       pack();
     });
     acceptButton.addActionListener(l -> {
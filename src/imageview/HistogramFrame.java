@@ -0,0 +1,84 @@
+package imageview;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import script.Features;
+
+/**
+ * JFrame showing the histogram of each channel of the image, as a line per channel over the 256
+ * channel values. The histograms are those of the image when the window was opened.
+ */
+public class HistogramFrame extends JFrame {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int CHART_WIDTH = 512;
+  private static final int CHART_HEIGHT = 256;
+
+  private static final Color[] CHANNEL_COLORS = {Color.RED, Color.GREEN, Color.BLUE};
+
+  private final int[][] histograms;
+  private final int highestCount;
+
+  /**
+   * Constructs and displays the histogram window.
+   *
+   * @param f controller features required
+   */
+  public HistogramFrame(Features f) {
+    super("Histogram");
+    this.histograms = f.getHistograms();
+    int highest = 1;
+    for (int[] histogram : this.histograms) {
+      for (int count : histogram) {
+        highest = Math.max(highest, count);
+      }
+    }
+    this.highestCount = highest;
+
+    // Setup frame
+    setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+    setLayout(new BorderLayout());
+
+    // Panel with custom paint method drawing the histograms
+    JPanel chart = new JPanel() {
+      @Override
+      protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        drawHistograms(g, getWidth(), getHeight());
+      }
+    };
+    chart.setBackground(Color.BLACK);
+    chart.setPreferredSize(new Dimension(CHART_WIDTH, CHART_HEIGHT));
+    add(chart, BorderLayout.CENTER);
+
+    pack();
+    setVisible(true);
+  }
+
+  /**
+   * Draws the histogram of each channel as a line, scaled so the highest count of any channel
+   * reaches the top.
+   *
+   * @param g      the graphics to draw with
+   * @param width  the width of the area to draw in
+   * @param height the height of the area to draw in
+   */
+  private void drawHistograms(Graphics g, int width, int height) {
+    int[] xs = new int[256];
+    int[] ys = new int[256];
+    for (int z = 0; z < 3; z++) {
+      for (int i = 0; i < 256; i++) {
+        xs[i] = i * (width - 1) / 255;
+        ys[i] = height - 1
+                - (int) ((long) this.histograms[z][i] * (height - 1) / this.highestCount);
+      }
+      g.setColor(CHANNEL_COLORS[z]);
+      g.drawPolyline(xs, ys, 256);
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package imageview;
 
+import images.EdgeMode;
+import images.FusionMode;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Cursor;
@@ -13,10 +15,12 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
+import javax.swing.ButtonGroup;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
@@ -27,6 +31,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import javax.swing.JTextArea;
@@ -51,15 +56,25 @@ public class SwingImageView extends JFrame implements ImageView {
 
   private JMenuItem blurMenuItem;
   private JMenuItem sharpenMenuItem;
+  private JMenuItem boxBlurMenuItem;
+  private JMenuItem gaussianBlurMenuItem;
+  private JMenuItem kernelMenuItem;
+  private JMenuItem colorMatrixMenuItem;
   private JMenuItem grayscaleMenuItem;
   private JMenuItem sepiaMenuItem;
   private JMenuItem ditherMenuItem;
   private JMenuItem mosaicMenuItem;
   private JMenuItem edgeDetectionMenuItem;
+  private JMenuItem fastEdgeDetectionMenuItem;
   private JMenuItem createScriptMenuItem;
   private JMenuItem executeScriptMenuItem;
   private JMenuItem cropMenuItem;
+  private JMenuItem histogramMenuItem;
   private JMenuItem histogramEqualizationMenuItem;
+  private JMenuItem claheMenuItem;
+  private Map<EdgeMode, JRadioButtonMenuItem> edgeModeMenuItems;
+  private Map<FusionMode, JRadioButtonMenuItem> fusionModeMenuItems;
+  private Map<Integer, JRadioButtonMenuItem> threadMenuItems;
   private JMenuBar toolbar;
 
   private JFileChooser imageFileChooser;
@@ -109,12 +124,18 @@ public class SwingImageView extends JFrame implements ImageView {
     // Filter menu
     blurMenuItem = new JMenuItem("Blur");
     sharpenMenuItem = new JMenuItem("Sharpen");
+    boxBlurMenuItem = new JMenuItem("Box Blur...");
+    gaussianBlurMenuItem = new JMenuItem("Gaussian Blur...");
+    kernelMenuItem = new JMenuItem("Custom Kernel...");
+    colorMatrixMenuItem = new JMenuItem("Custom Color Matrix...");
     grayscaleMenuItem = new JMenuItem("Grayscale");
     sepiaMenuItem = new JMenuItem("Sepia");
     ditherMenuItem = new JMenuItem("Dither");
     mosaicMenuItem = new JMenuItem("Mosaic");
     edgeDetectionMenuItem = new JMenuItem("Edge Detection Effect");
+    fastEdgeDetectionMenuItem = new JMenuItem("Fast Edge Detection Effect");
     histogramEqualizationMenuItem = new JMenuItem("Histogram Equalization");
+    claheMenuItem = new JMenuItem("Adaptive Histogram Equalization...");
 
     blurMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_B, KeyEvent.CTRL_DOWN_MASK));
     sharpenMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_P, KeyEvent.CTRL_DOWN_MASK));
@@ -131,30 +152,89 @@ public class SwingImageView extends JFrame implements ImageView {
 
     blurMenuItem.setEnabled(false);
     sharpenMenuItem.setEnabled(false);
+    boxBlurMenuItem.setEnabled(false);
+    gaussianBlurMenuItem.setEnabled(false);
+    kernelMenuItem.setEnabled(false);
+    colorMatrixMenuItem.setEnabled(false);
     grayscaleMenuItem.setEnabled(false);
     sepiaMenuItem.setEnabled(false);
     ditherMenuItem.setEnabled(false);
     mosaicMenuItem.setEnabled(false);
     edgeDetectionMenuItem.setEnabled(false);
+    fastEdgeDetectionMenuItem.setEnabled(false);
     histogramEqualizationMenuItem.setEnabled(false);
+    claheMenuItem.setEnabled(false);
 
     JMenu filterMenu = new JMenu("Filter");
     filterMenu.add(blurMenuItem);
     filterMenu.add(sharpenMenuItem);
+    filterMenu.add(boxBlurMenuItem);
+    filterMenu.add(gaussianBlurMenuItem);
+    filterMenu.add(kernelMenuItem);
     filterMenu.add(grayscaleMenuItem);
     filterMenu.add(sepiaMenuItem);
+    filterMenu.add(colorMatrixMenuItem);
     filterMenu.add(ditherMenuItem);
     filterMenu.add(mosaicMenuItem);
     filterMenu.add(edgeDetectionMenuItem);
+    filterMenu.add(fastEdgeDetectionMenuItem);
     filterMenu.add(histogramEqualizationMenuItem);
+    filterMenu.add(claheMenuItem);
+
+    // Edge mode sub menu, one choice selected at a time
+    JMenu edgeModeMenu = new JMenu("Edges");
+    ButtonGroup edgeModeGroup = new ButtonGroup();
+    edgeModeMenuItems = new LinkedHashMap<>();
+    edgeModeMenuItems.put(EdgeMode.ZERO, new JRadioButtonMenuItem("Black", true));
+    edgeModeMenuItems.put(EdgeMode.CLAMP, new JRadioButtonMenuItem("Repeat Edge"));
+    edgeModeMenuItems.put(EdgeMode.MIRROR, new JRadioButtonMenuItem("Mirror"));
+    edgeModeMenuItems.put(EdgeMode.WRAP, new JRadioButtonMenuItem("Wrap Around"));
+    for (JRadioButtonMenuItem item : edgeModeMenuItems.values()) {
+      edgeModeGroup.add(item);
+      edgeModeMenu.add(item);
+    }
+    filterMenu.addSeparator();
+    filterMenu.add(edgeModeMenu);
+
+    // Fusion sub menu, exact fusion is the default of the model
+    JMenu fusionModeMenu = new JMenu("Fusion");
+    ButtonGroup fusionModeGroup = new ButtonGroup();
+    fusionModeMenuItems = new LinkedHashMap<>();
+    fusionModeMenuItems.put(FusionMode.OFF, new JRadioButtonMenuItem("Off"));
+    fusionModeMenuItems.put(FusionMode.EXACT, new JRadioButtonMenuItem("Exact", true));
+    fusionModeMenuItems.put(FusionMode.FUSED, new JRadioButtonMenuItem("Fused"));
+    for (JRadioButtonMenuItem item : fusionModeMenuItems.values()) {
+      fusionModeGroup.add(item);
+      fusionModeMenu.add(item);
+    }
+    filterMenu.add(fusionModeMenu);
 
     // Tools Menu
     cropMenuItem = new JMenuItem("Crop");
     cropMenuItem.setEnabled(false);
     cropMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_R, KeyEvent.CTRL_DOWN_MASK));
+    histogramMenuItem = new JMenuItem("Histogram");
+    histogramMenuItem.setEnabled(false);
 
     JMenu toolsMenu = new JMenu("Tools");
     toolsMenu.add(cropMenuItem);
+    toolsMenu.add(histogramMenuItem);
+
+    // Thread sub menu, powers of two up to the number of processors, which is the default
+    int processors = Runtime.getRuntime().availableProcessors();
+    JMenu threadMenu = new JMenu("Threads");
+    ButtonGroup threadGroup = new ButtonGroup();
+    threadMenuItems = new LinkedHashMap<>();
+    for (int threads = 1; threads < processors; threads = threads * 2) {
+      threadMenuItems.put(threads, new JRadioButtonMenuItem(String.valueOf(threads)));
+    }
+    threadMenuItems.put(processors, new JRadioButtonMenuItem(processors + " (all)", true));
+    for (JRadioButtonMenuItem item : threadMenuItems.values()) {
+      threadGroup.add(item);
+      threadMenu.add(item);
+    }
+    toolsMenu.addSeparator();
+    toolsMenu.add(threadMenu);
 
     // Script Menu
     createScriptMenuItem = new JMenuItem("Create");
@@ -178,8 +258,12 @@ public class SwingImageView extends JFrame implements ImageView {
      * File choosers
      */
     imageFileChooser = new JFileChooser();
+    // Raw .iem intermediates are read without ImageIO
+    String[] readerSuffixes = ImageIO.getReaderFileSuffixes();
+    String[] imageSuffixes = Arrays.copyOf(readerSuffixes, readerSuffixes.length + 1);
+    imageSuffixes[readerSuffixes.length] = "iem";
     imageFileChooser.addChoosableFileFilter(
-            new FileNameExtensionFilter("Image files", ImageIO.getReaderFileSuffixes()));
+            new FileNameExtensionFilter("Image files", imageSuffixes));
     imageFileChooser.setAcceptAllFileFilterUsed(false);
     scriptFileChooser = new JFileChooser();
     scriptFileChooser.addChoosableFileFilter(
@@ -220,6 +304,16 @@ public class SwingImageView extends JFrame implements ImageView {
     statusArea.update(statusArea.getGraphics());
   }
 
+  /**
+   * Returns true, the image is shown after every command.
+   *
+   * @return true
+   */
+  @Override
+  public boolean showsImage() {
+    return true;
+  }
+
   /**
    * Updates the view with new image and await further input.
    */
@@ -229,14 +323,21 @@ public class SwingImageView extends JFrame implements ImageView {
     imageLabel.setIcon(new ImageIcon(image));
     blurMenuItem.setEnabled(true);
     sharpenMenuItem.setEnabled(true);
+    boxBlurMenuItem.setEnabled(true);
+    gaussianBlurMenuItem.setEnabled(true);
+    kernelMenuItem.setEnabled(true);
+    colorMatrixMenuItem.setEnabled(true);
     grayscaleMenuItem.setEnabled(true);
     sepiaMenuItem.setEnabled(true);
     ditherMenuItem.setEnabled(true);
     mosaicMenuItem.setEnabled(true);
     edgeDetectionMenuItem.setEnabled(true);
+    fastEdgeDetectionMenuItem.setEnabled(true);
     saveMenuItem.setEnabled(true);
     cropMenuItem.setEnabled(true);
+    histogramMenuItem.setEnabled(true);
     histogramEqualizationMenuItem.setEnabled(true);
+    claheMenuItem.setEnabled(true);
   }
 
   /**
@@ -275,6 +376,72 @@ public class SwingImageView extends JFrame implements ImageView {
       this.update(f.getBufferedImage());
       this.showMessage("Image sharpened");
     });
+    boxBlurMenuItem.addActionListener(l -> {
+      String radius = JOptionPane.showInputDialog(this, "Blur radius in pixels:", "5");
+      if (radius != null) {
+        try {
+          this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+          f.applyBoxBlur(Integer.parseInt(radius.trim()));
+          this.update(f.getBufferedImage());
+          this.showMessage("Box blur applied with radius " + radius.trim());
+        } catch (IllegalArgumentException e) {
+          JOptionPane.showMessageDialog(this, "Invalid radius: " + e.getMessage(),
+                  "Blur Error", JOptionPane.ERROR_MESSAGE);
+        } finally {
+          this.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+        }
+      }
+    });
+    gaussianBlurMenuItem.addActionListener(l -> {
+      String sigma = JOptionPane.showInputDialog(this, "Blur sigma in pixels:", "2.0");
+      if (sigma != null) {
+        try {
+          this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+          f.applyGaussianBlur(Double.parseDouble(sigma.trim()));
+          this.update(f.getBufferedImage());
+          this.showMessage("Gaussian blur applied with sigma " + sigma.trim());
+        } catch (IllegalArgumentException e) {
+          JOptionPane.showMessageDialog(this, "Invalid sigma: " + e.getMessage(),
+                  "Blur Error", JOptionPane.ERROR_MESSAGE);
+        } finally {
+          this.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+        }
+      }
+    });
+    kernelMenuItem.addActionListener(l -> {
+      String weights = JOptionPane.showInputDialog(this,
+              "Kernel weights, rows separated by semicolons:", "0 0.2 0; 0.2 0.2 0.2; 0 0.2 0");
+      if (weights != null) {
+        try {
+          this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+          double[][] kernel = parseMatrix(weights);
+          f.applyKernel(kernel);
+          this.update(f.getBufferedImage());
+          this.showMessage(String.format("Applied %dx%d kernel", kernel[0].length,
+                  kernel.length));
+        } catch (IllegalArgumentException e) {
+          JOptionPane.showMessageDialog(this, "Invalid kernel: " + e.getMessage(),
+                  "Kernel Error", JOptionPane.ERROR_MESSAGE);
+        } finally {
+          this.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+        }
+      }
+    });
+    colorMatrixMenuItem.addActionListener(l -> {
+      String weights = JOptionPane.showInputDialog(this,
+              "Red, green and blue rows of the matrix, separated by semicolons:",
+              "1 0 0; 0 1 0; 0 0 1");
+      if (weights != null) {
+        try {
+          f.applyColorMatrix(parseMatrix(weights));
+          this.update(f.getBufferedImage());
+          this.showMessage("Color matrix applied");
+        } catch (IllegalArgumentException e) {
+          JOptionPane.showMessageDialog(this, "Invalid color matrix: " + e.getMessage(),
+                  "Color Matrix Error", JOptionPane.ERROR_MESSAGE);
+        }
+      }
+    });
     grayscaleMenuItem.addActionListener(l -> {
       f.applyGrayscale();
       this.update(f.getBufferedImage());
@@ -307,6 +474,11 @@ public class SwingImageView extends JFrame implements ImageView {
       this.update(f.getBufferedImage());
       this.showMessage("Edge detection effect applied");
     });
+    fastEdgeDetectionMenuItem.addActionListener(l -> {
+      f.applyEdgeDetection(true);
+      this.update(f.getBufferedImage());
+      this.showMessage("Fast edge detection effect applied");
+    });
     histogramEqualizationMenuItem.addActionListener(l -> {
       JOptionPane.showMessageDialog(this,
               "Histogram equalization works best with grayscale images, but can still be"
@@ -315,6 +487,49 @@ public class SwingImageView extends JFrame implements ImageView {
       this.update(f.getBufferedImage());
       this.showMessage("Histogram Equalization applied");
     });
+    claheMenuItem.addActionListener(l -> {
+      String settings = JOptionPane.showInputDialog(this,
+              "Tiles across, tiles down and clip limit:", "8 8 3");
+      if (settings != null) {
+        try {
+          String[] values = settings.trim().split("\\s+");
+          if (values.length != 3) {
+            throw new IllegalArgumentException("Expected three numbers.");
+          }
+          this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+          f.applyClahe(Integer.parseInt(values[0]), Integer.parseInt(values[1]),
+                  Double.parseDouble(values[2]));
+          this.update(f.getBufferedImage());
+          this.showMessage("Adaptive histogram equalization applied");
+        } catch (IllegalArgumentException e) {
+          JOptionPane.showMessageDialog(this, "Invalid settings: " + e.getMessage(),
+                  "Equalization Error", JOptionPane.ERROR_MESSAGE);
+        } finally {
+          this.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+        }
+      }
+    });
+
+    for (Map.Entry<EdgeMode, JRadioButtonMenuItem> entry : edgeModeMenuItems.entrySet()) {
+      entry.getValue().addActionListener(l -> {
+        f.setEdgeMode(entry.getKey());
+        this.showMessage("Edges treated as: " + entry.getValue().getText());
+      });
+    }
+
+    for (Map.Entry<FusionMode, JRadioButtonMenuItem> entry : fusionModeMenuItems.entrySet()) {
+      entry.getValue().addActionListener(l -> {
+        f.setFusionMode(entry.getKey());
+        this.showMessage("Filter fusion: " + entry.getValue().getText());
+      });
+    }
+
+    for (Map.Entry<Integer, JRadioButtonMenuItem> entry : threadMenuItems.entrySet()) {
+      entry.getValue().addActionListener(l -> {
+        f.setParallelism(entry.getKey());
+        this.showMessage("Filters use " + entry.getKey() + " thread(s)");
+      });
+    }
 
     /*
      * Script menu items
@@ -347,6 +562,10 @@ public class SwingImageView extends JFrame implements ImageView {
     cropMenuItem.addActionListener(l -> {
       new CropPreviewFrame(f, this);
     });
+
+    histogramMenuItem.addActionListener(l -> {
+      new HistogramFrame(f);
+    });
   }
 
 
@@ -384,7 +603,8 @@ public class SwingImageView extends JFrame implements ImageView {
       if (fileReturnVal == JFileChooser.APPROVE_OPTION) {
         File file = imageFileChooser.getSelectedFile();
         // if saving without extension, add extension
-        if (!file.toString().endsWith(".jpg") && !file.toString().endsWith(".png")) {
+        if (!file.toString().endsWith(".jpg") && !file.toString().endsWith(".png")
+                && !file.toString().endsWith(".iem")) {
           file = new File(file + ".jpg");
         }
         // Save file
@@ -396,6 +616,27 @@ public class SwingImageView extends JFrame implements ImageView {
     }
   }
 
+  /**
+   * Private method for reading a matrix typed as rows separated by semicolons, each row a list
+   * of numbers separated by spaces or commas.
+   *
+   * @param text the typed matrix
+   * @return the matrix, rows may differ in length
+   * @throws IllegalArgumentException if an entry is not a number
+   */
+  private static double[][] parseMatrix(String text) throws IllegalArgumentException {
+    String[] rows = text.trim().split("\\s*;\\s*");
+    double[][] matrix = new double[rows.length][];
+    for (int r = 0; r < rows.length; r++) {
+      String[] entries = rows[r].trim().split("[\\s,]+");
+      matrix[r] = new double[entries.length];
+      for (int c = 0; c < entries.length; c++) {
+        matrix[r][c] = Double.parseDouble(entries[c]);
+      }
+    }
+    return matrix;
+  }
+
   /**
    * Private method for creating and a JSlider specifically to get number of mosaic
    * seeds.
@@ -512,7 +753,8 @@ public class SwingImageView extends JFrame implements ImageView {
             int fileReturnVal = imageFileChooser.showSaveDialog(editorFrame);
             if (fileReturnVal == JFileChooser.APPROVE_OPTION) {
               File file = imageFileChooser.getSelectedFile();
-              if (!file.toString().endsWith(".jpg") && !file.toString().endsWith(".png")) {
+              if (!file.toString().endsWith(".jpg") && !file.toString().endsWith(".png")
+                      && !file.toString().endsWith(".iem")) {
                 file = new File(file + ".jpg");
               }
               editorTextArea.append(
@@ -1,5 +1,7 @@
 package script;
 
+import images.EdgeMode;
+import images.FusionMode;
 import images.ImageModel;
 import java.awt.image.BufferedImage;
 import java.util.Scanner;
@@ -42,6 +44,22 @@ public class ConcreteImageController implements ImageController, Features {
     this.model.loadImage(inputPath);
   }
 
+  /**
+   * Loads part of an image into the program, keeping only every few pixels.
+   *
+   * @param inputPath   the full file path to the image to be loaded
+   * @param startX      the column of the first pixel to load
+   * @param startY      the row of the first pixel to load
+   * @param width       the width of the region to load in pixels
+   * @param height      the height of the region to load in pixels
+   * @param subsampling the distance between loaded pixels in both directions, 1 to load all
+   */
+  @Override
+  public void loadImage(String inputPath, int startX, int startY, int width, int height,
+                        int subsampling) {
+    this.model.loadImage(inputPath, startX, startY, width, height, subsampling);
+  }
+
   /**
    * Saves the image the program is holding to a local directory.
    *
@@ -68,6 +86,51 @@ public class ConcreteImageController implements ImageController, Features {
     this.model.applySharpen();
   }
 
+  /**
+   * Applies a box blur to the program's image.
+   *
+   * @param radius the number of pixels the blur reaches out from each pixel
+   * @throws IllegalArgumentException if the radius is negative or too large
+   */
+  @Override
+  public void applyBoxBlur(int radius) throws IllegalArgumentException {
+    this.model.applyBoxBlur(radius);
+  }
+
+  /**
+   * Applies a gaussian blur to the program's image.
+   *
+   * @param sigma the standard deviation of the gaussian in pixels
+   * @throws IllegalArgumentException if sigma is negative, not a number or too large
+   */
+  @Override
+  public void applyGaussianBlur(double sigma) throws IllegalArgumentException {
+    this.model.applyGaussianBlur(sigma);
+  }
+
+  /**
+   * Filters the program's image with a given kernel.
+   *
+   * @param kernel the filter kernel, every row the same length
+   * @throws IllegalArgumentException if the kernel is empty, its rows differ in length or a
+   *                                  weight is not a finite number
+   */
+  @Override
+  public void applyKernel(double[][] kernel) throws IllegalArgumentException {
+    this.model.applyKernel(kernel);
+  }
+
+  /**
+   * Applies a given color transformation matrix to the program's image.
+   *
+   * @param matrix the 3x3 color transformation matrix
+   * @throws IllegalArgumentException if the matrix is not 3x3 or a weight is not a finite number
+   */
+  @Override
+  public void applyColorMatrix(double[][] matrix) throws IllegalArgumentException {
+    this.model.applyColorMatrix(matrix);
+  }
+
   /**
    * Apply the grayscale color transformation to the program's image.
    */
@@ -134,6 +197,17 @@ public class ConcreteImageController implements ImageController, Features {
     this.model.applyEdgeDetection();
   }
 
+  /**
+   * Produces a grayscale image where edges (areas of high contrast) are highlighted, optionally
+   * with the faster approximate gradient magnitude.
+   *
+   * @param fastMagnitude whether to use the faster approximate gradient magnitude
+   */
+  @Override
+  public void applyEdgeDetection(boolean fastMagnitude) {
+    this.model.applyEdgeDetection(fastMagnitude);
+  }
+
   /**
    * Equalizes the images' histogram. Best on greyscale images but will work on color images with
    * by equalizing each channel separately.
@@ -143,6 +217,53 @@ public class ConcreteImageController implements ImageController, Features {
     this.model.applyHistogramEqualization();
   }
 
+  /**
+   * Equalizes the histogram of each channel in every tile of a grid, limiting how much the
+   * contrast is stretched.
+   *
+   * @param tilesX    the number of tiles across the image
+   * @param tilesY    the number of tiles down the image
+   * @param clipLimit the most pixels a channel value may have in a tile, as a multiple of the
+   *                  average count of a value
+   * @throws IllegalArgumentException if a number of tiles is not positive or the clip limit is
+   *                                  not a positive number
+   */
+  @Override
+  public void applyClahe(int tilesX, int tilesY, double clipLimit)
+          throws IllegalArgumentException {
+    this.model.applyClahe(tilesX, tilesY, clipLimit);
+  }
+
+  /**
+   * Sets how blur, sharpen and edge detection treat the pixels beyond the edges of the image.
+   *
+   * @param edgeMode how pixels outside the image are treated
+   */
+  @Override
+  public void setEdgeMode(EdgeMode edgeMode) {
+    this.model.setEdgeMode(edgeMode);
+  }
+
+  /**
+   * Sets when consecutive blur, sharpen and custom kernels are composed into one.
+   *
+   * @param fusionMode when consecutive filters are composed
+   */
+  @Override
+  public void setFusionMode(FusionMode fusionMode) {
+    this.model.setFusionMode(fusionMode);
+  }
+
+  /**
+   * Sets how many threads image operations may use.
+   *
+   * @param threads the number of threads, at least 1
+   */
+  @Override
+  public void setParallelism(int threads) {
+    this.model.setParallelism(threads);
+  }
+
   /**
    * Executes a sequence of features.
    *
@@ -175,6 +296,27 @@ public class ConcreteImageController implements ImageController, Features {
               view.showMessage(e.getMessage());
               break;
             }
+          case "load-preview":
+            try {
+              view.showMessage("Load the image preview:");
+              String imageIn = scanner.next();
+              int subsampling = nextInt(scanner, "subsampling");
+              // The region is optional, without it the whole image is loaded
+              int[] region = {0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE};
+              if (scanner.hasNextInt()) {
+                for (int i = 0; i < region.length; i++) {
+                  region[i] = nextInt(scanner, "region");
+                }
+              }
+              view.showMessage("Loading preview of " + imageIn);
+              this.loadImage(imageIn, region[0], region[1], region[2], region[3], subsampling);
+              view.showMessage("Loaded preview of " + imageIn);
+              isImageLoaded = true;
+              break;
+            } catch (IllegalArgumentException e) {
+              view.showMessage(e.getMessage());
+              break;
+            }
           case "save":
             try {
               view.showMessage("Save the image:");
@@ -200,6 +342,58 @@ public class ConcreteImageController implements ImageController, Features {
             view.showMessage("Applied sharpen.");
             break;
 
+          case "boxblur":
+            try {
+              int radius = nextInt(scanner, "radius");
+              view.showMessage("Applying box blur.");
+              this.applyBoxBlur(radius);
+              view.showMessage(String.format("Applied box blur: radius %d", radius));
+            } catch (IllegalArgumentException e) {
+              view.showMessage(e.getMessage());
+            }
+            break;
+
+          case "gaussianblur":
+            try {
+              double sigma = nextDouble(scanner, "sigma");
+              view.showMessage("Applying gaussian blur.");
+              this.applyGaussianBlur(sigma);
+              view.showMessage(String.format("Applied gaussian blur: sigma %s", sigma));
+            } catch (IllegalArgumentException e) {
+              view.showMessage(e.getMessage());
+            }
+            break;
+
+          case "kernel":
+            try {
+              int kernelWidth = nextInt(scanner, "kernel width");
+              int kernelHeight = nextInt(scanner, "kernel height");
+              if (kernelWidth < 1 || kernelHeight < 1) {
+                throw new IllegalArgumentException(String.format(
+                        "Error reading kernel, %dx%d not a valid size.", kernelWidth,
+                        kernelHeight));
+              }
+              double[][] kernel = nextMatrix(scanner, kernelHeight, kernelWidth, "kernel weight");
+              view.showMessage("Applying kernel.");
+              this.applyKernel(kernel);
+              view.showMessage(String.format("Applied %dx%d kernel.", kernelWidth,
+                      kernelHeight));
+            } catch (IllegalArgumentException e) {
+              view.showMessage(e.getMessage());
+            }
+            break;
+
+          case "colormatrix":
+            try {
+              double[][] matrix = nextMatrix(scanner, 3, 3, "color matrix weight");
+              view.showMessage("Applying color matrix.");
+              this.applyColorMatrix(matrix);
+              view.showMessage("Applied color matrix.");
+            } catch (IllegalArgumentException e) {
+              view.showMessage(e.getMessage());
+            }
+            break;
+
           case "grayscale":
             view.showMessage("Applying grayscale.");
             this.applyGrayscale();
@@ -238,7 +432,12 @@ public class ConcreteImageController implements ImageController, Features {
 
           case "edgedetection":
             view.showMessage("Applying edge detection.");
-            this.applyEdgeDetection();
+            if (scanner.hasNext("(?i)fast")) {
+              scanner.next();
+              this.applyEdgeDetection(true);
+            } else {
+              this.applyEdgeDetection();
+            }
             view.showMessage("Applied edge detection.");
             break;
 
@@ -248,6 +447,59 @@ public class ConcreteImageController implements ImageController, Features {
             view.showMessage("Applied histogram equalization.");
             break;
 
+          case "clahe":
+            try {
+              int tilesX = nextInt(scanner, "tiles across");
+              int tilesY = nextInt(scanner, "tiles down");
+              double clipLimit = nextDouble(scanner, "clip limit");
+              view.showMessage("Applying adaptive histogram equalization.");
+              this.applyClahe(tilesX, tilesY, clipLimit);
+              view.showMessage(String.format(
+                      "Applied adaptive histogram equalization: %dx%d tiles, clip limit %s",
+                      tilesX, tilesY, clipLimit));
+            } catch (IllegalArgumentException e) {
+              view.showMessage(e.getMessage());
+            }
+            break;
+
+          case "edgemode":
+            String modeName = scanner.next();
+            try {
+              EdgeMode edgeMode = EdgeMode.valueOf(modeName.toUpperCase());
+              this.setEdgeMode(edgeMode);
+              view.showMessage("Edge mode set to " + edgeMode.name().toLowerCase() + ".");
+            } catch (IllegalArgumentException e) {
+              view.showMessage(String.format(
+                      "Error setting edge mode, \"%s\" not one of zero, clamp, mirror or wrap.",
+                      modeName));
+            }
+            break;
+
+          case "fusion":
+            String fusionName = scanner.next();
+            try {
+              FusionMode fusionMode = FusionMode.valueOf(fusionName.toUpperCase());
+              this.setFusionMode(fusionMode);
+              view.showMessage("Filter fusion set to " + fusionMode.name().toLowerCase() + ".");
+            } catch (IllegalArgumentException e) {
+              view.showMessage(String.format(
+                      "Error setting fusion, \"%s\" not one of off, exact or fused.",
+                      fusionName));
+            }
+            break;
+
+          case "threads":
+            String threadCount = scanner.next();
+            try {
+              int threads = Integer.parseInt(threadCount);
+              this.setParallelism(threads);
+              view.showMessage("Using " + threads + (threads == 1 ? " thread." : " threads."));
+            } catch (IllegalArgumentException e) {
+              view.showMessage(String.format(
+                      "Error setting threads, \"%s\" not a positive integer.", threadCount));
+            }
+            break;
+
           case "quit":
           case "exit":
             view.showMessage("Exiting program.");
@@ -261,13 +513,69 @@ public class ConcreteImageController implements ImageController, Features {
       }
 
       if (isImageLoaded) {
-        view.update(this.getBufferedImage());
+        // Getting the image applies deferred filters, so it is left to views that show it
+        view.update(view.showsImage() ? this.getBufferedImage() : null);
       } else {
         view.promptForImage();
       }
     }
   }
 
+  /**
+   * Reads the next integer argument of a command.
+   *
+   * @param scanner the scanner reading the commands
+   * @param name    the name of the argument, for the error message
+   * @return the integer argument
+   * @throws IllegalArgumentException if the next token is not an integer
+   */
+  private static int nextInt(Scanner scanner, String name) throws IllegalArgumentException {
+    if (!scanner.hasNextInt()) {
+      throw new IllegalArgumentException(String.format(
+              "Error reading %s, \"%s\" not a integer.", name, scanner.next()));
+    }
+    return scanner.nextInt();
+  }
+
+  /**
+   * Reads the next number argument of a command, written with a point before any decimals.
+   *
+   * @param scanner the scanner reading the commands
+   * @param name    the name of the argument, for the error message
+   * @return the number argument
+   * @throws IllegalArgumentException if the next token is not a number
+   */
+  private static double nextDouble(Scanner scanner, String name) throws IllegalArgumentException {
+    String token = scanner.next();
+    try {
+      return Double.parseDouble(token);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(String.format(
+              "Error reading %s, \"%s\" not a number.", name, token));
+    }
+  }
+
+  /**
+   * Reads the next numbers of a command as a matrix, row by row.
+   *
+   * @param scanner the scanner reading the commands
+   * @param rows    the number of rows of the matrix
+   * @param columns the number of numbers in each row
+   * @param name    the name of an entry, for the error message
+   * @return the matrix read
+   * @throws IllegalArgumentException if one of the tokens is not a number
+   */
+  private static double[][] nextMatrix(Scanner scanner, int rows, int columns, String name)
+          throws IllegalArgumentException {
+    double[][] matrix = new double[rows][columns];
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < columns; c++) {
+        matrix[r][c] = nextDouble(scanner, name);
+      }
+    }
+    return matrix;
+  }
+
   /**
    * Returns a BufferedImage from the model.
    *
@@ -278,4 +586,24 @@ public class ConcreteImageController implements ImageController, Features {
     return this.model.getBufferedImage();
   }
 
+  /**
+   * Returns a detached copy of the image in the model as a BufferedImage.
+   *
+   * @return a copy of the image in the model as a BufferedImage
+   */
+  @Override
+  public BufferedImage getBufferedImageSnapshot() {
+    return this.model.getBufferedImageSnapshot();
+  }
+
+  /**
+   * Returns how many pixels of the image in the model have each value in each channel.
+   *
+   * @return the histogram of the red, green and blue channel, each of 256 counts
+   */
+  @Override
+  public int[][] getHistograms() {
+    return this.model.getHistograms();
+  }
+
 }
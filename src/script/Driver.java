@@ -13,7 +13,8 @@ public class Driver {
   /**
    * Main class that reads a script for running the image program.
    *
-   * @param args First parameter must the file path to the script to load
+   * @param args First parameter must the file path to the script to load, the optional second
+   *             parameter is the number of threads filters may use
    */
   public static void main(String[] args) {
 
@@ -32,6 +33,14 @@ public class Driver {
       Readable input = new FileReader(inputFile);
 
       ImageModel model = new ConcreteImageModel();
+      if (args.length > 1) {
+        try {
+          model.setParallelism(Integer.parseInt(args[1]));
+        } catch (IllegalArgumentException e) {
+          System.out.println("Invalid number of threads: " + args[1]);
+          return;
+        }
+      }
       ImageView view = new TextBasedConcreteImageView(System.out, input);
       ImageController controller = new ConcreteImageController(model, view);
 
@@ -1,5 +1,7 @@
 package script;
 
+import images.EdgeMode;
+import images.FusionMode;
 import java.awt.image.BufferedImage;
 
 /**
@@ -14,6 +16,20 @@ public interface Features {
    */
   void loadImage(String inputPath);
 
+  /**
+   * Loads part of an image into the program, keeping only every few pixels. Used for quick
+   * previews of large images, which are loaded in full when saved.
+   *
+   * @param inputPath   the full file path to the image to be loaded
+   * @param startX      the column of the first pixel to load
+   * @param startY      the row of the first pixel to load
+   * @param width       the width of the region to load in pixels
+   * @param height      the height of the region to load in pixels
+   * @param subsampling the distance between loaded pixels in both directions, 1 to load all
+   */
+  void loadImage(String inputPath, int startX, int startY, int width, int height,
+                 int subsampling);
+
   /**
    * Saves the image the program is holding to a local directory.
    *
@@ -31,6 +47,39 @@ public interface Features {
    */
   void applySharpen();
 
+  /**
+   * Applies a box blur to the program's image.
+   *
+   * @param radius the number of pixels the blur reaches out from each pixel
+   * @throws IllegalArgumentException if the radius is negative or too large
+   */
+  void applyBoxBlur(int radius) throws IllegalArgumentException;
+
+  /**
+   * Applies a gaussian blur to the program's image.
+   *
+   * @param sigma the standard deviation of the gaussian in pixels
+   * @throws IllegalArgumentException if sigma is negative, not a number or too large
+   */
+  void applyGaussianBlur(double sigma) throws IllegalArgumentException;
+
+  /**
+   * Filters the program's image with a given kernel.
+   *
+   * @param kernel the filter kernel, every row the same length
+   * @throws IllegalArgumentException if the kernel is empty, its rows differ in length or a
+   *                                  weight is not a finite number
+   */
+  void applyKernel(double[][] kernel) throws IllegalArgumentException;
+
+  /**
+   * Applies a given color transformation matrix to the program's image.
+   *
+   * @param matrix the 3x3 color transformation matrix
+   * @throws IllegalArgumentException if the matrix is not 3x3 or a weight is not a finite number
+   */
+  void applyColorMatrix(double[][] matrix) throws IllegalArgumentException;
+
   /**
    * Apply the grayscale color transformation to the program's image.
    */
@@ -75,12 +124,55 @@ public interface Features {
    */
   public void applyEdgeDetection();
 
+  /**
+   * Produces a grayscale image where edges (areas of high contrast) are highlighted, optionally
+   * adding the absolute gradients instead of taking the length of the gradient, which is faster.
+   *
+   * @param fastMagnitude whether to use the faster approximate gradient magnitude
+   */
+  public void applyEdgeDetection(boolean fastMagnitude);
+
   /**
    * Equalizes the images' histogram. Best on greyscale images but will work on color images with
    * by equalizing each channel separately.
    */
   public void applyHistogramEqualization();
 
+  /**
+   * Equalizes the histogram of each channel in every tile of a grid, limiting how much the
+   * contrast is stretched, and blends the tables of neighbouring tiles so there are no seams.
+   *
+   * @param tilesX    the number of tiles across the image
+   * @param tilesY    the number of tiles down the image
+   * @param clipLimit the most pixels a channel value may have in a tile, as a multiple of the
+   *                  average count of a value
+   * @throws IllegalArgumentException if a number of tiles is not positive or the clip limit is
+   *                                  not a positive number
+   */
+  public void applyClahe(int tilesX, int tilesY, double clipLimit)
+          throws IllegalArgumentException;
+
+  /**
+   * Sets how blur, sharpen and edge detection treat the pixels beyond the edges of the image.
+   *
+   * @param edgeMode how pixels outside the image are treated
+   */
+  public void setEdgeMode(EdgeMode edgeMode);
+
+  /**
+   * Sets when consecutive blur, sharpen and custom kernels are composed into one.
+   *
+   * @param fusionMode when consecutive filters are composed
+   */
+  public void setFusionMode(FusionMode fusionMode);
+
+  /**
+   * Sets how many threads image operations may use.
+   *
+   * @param threads the number of threads, at least 1
+   */
+  public void setParallelism(int threads);
+
   /**
    * Executes a sequence of features.
    *
@@ -89,10 +181,25 @@ public interface Features {
   public void executeBatchCommands(Readable in);
 
   /**
-   * Returns a BufferedImage from the model.
+   * Returns a BufferedImage from the model. The image may share its pixels with the model and is
+   * only guaranteed to stay unchanged until the next call to this method.
    *
    * @return a BufferedImage from the model
    */
   public BufferedImage getBufferedImage();
 
+  /**
+   * Returns a detached copy of the image in the model as a BufferedImage.
+   *
+   * @return a copy of the image in the model as a BufferedImage
+   */
+  public BufferedImage getBufferedImageSnapshot();
+
+  /**
+   * Returns how many pixels of the image in the model have each value in each channel.
+   *
+   * @return the histogram of the red, green and blue channel, each of 256 counts
+   */
+  public int[][] getHistograms();
+
 }
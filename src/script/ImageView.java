@@ -16,9 +16,19 @@ public interface ImageView {
 
   /**
    * Updates or refreshes the view and await further input.
+   *
+   * @param image the image to show, null for views that don't show images
    */
   public void update(BufferedImage image);
 
+  /**
+   * Returns whether the view shows the image after every command. Views that don't are passed
+   * null on update, which lets the model keep filters deferred across commands.
+   *
+   * @return true if the view shows the image
+   */
+  public boolean showsImage();
+
   /**
    * Prompts a user to load an image to start.
    */
@@ -42,6 +42,16 @@ public class TextBasedConcreteImageView implements ImageView {
     }
   }
 
+  /**
+   * Returns false, this view only prints messages.
+   *
+   * @return false
+   */
+  @Override
+  public boolean showsImage() {
+    return false;
+  }
+
   /**
    * Updates or refreshes the view and await further input.
    */
@@ -419,4 +419,520 @@ public class ConcreteImageControllerTest {
     String expectedModel = "MODEL: Saving an invalid file.";
     assertEquals(expectedModel, modelLog.toString());
   }
-}
\ No newline at end of file
+
+  /**
+   * Tests that load-preview loads the whole image or a region with the given subsampling.
+   */
+  @Test
+  public void testLoadPreview() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelParent(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load-preview mock-load.jpg 4 blur "
+            + "load-preview mock-load.jpg 2 10 20 300 400 quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image preview:" + System.lineSeparator()
+            + "show message: Loading preview of mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded preview of mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying blur." + System.lineSeparator()
+            + "show message: Applied blur." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Load the image preview:" + System.lineSeparator()
+            + "show message: Loading preview of mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded preview of mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image region: mock-load.jpg 0 0 2147483647 2147483647 4"
+            + System.lineSeparator()
+            + "applying blur" + System.lineSeparator()
+            + "loading image region: mock-load.jpg 10 20 300 400 2" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that load-preview with a subsampling that is not an integer gives an error message.
+   */
+  @Test
+  public void testLoadPreviewInvalidSubsampling() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelParent(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load-preview mock-load.jpg half quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image preview:" + System.lineSeparator()
+            + "show message: Error reading subsampling, \"half\" not a integer."
+            + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    assertEquals("", modelLog.toString());
+  }
+
+  /**
+   * Tests that edgemode sets the edge mode and reports unknown modes.
+   */
+  @Test
+  public void testEdgeMode() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelParent(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg edgemode Clamp blur "
+            + "edgemode bogus quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Edge mode set to clamp." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying blur." + System.lineSeparator()
+            + "show message: Applied blur." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Error setting edge mode, \"bogus\" not one of zero, clamp, mirror or"
+            + " wrap." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "setting edge mode: CLAMP" + System.lineSeparator()
+            + "applying blur" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that boxblur and gaussianblur read their arguments and report ones that aren't numbers.
+   */
+  @Test
+  public void testSlidingWindowBlurs() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelParent(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg boxblur 5 gaussianblur 2.5 "
+            + "boxblur big gaussianblur wide quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying box blur." + System.lineSeparator()
+            + "show message: Applied box blur: radius 5" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying gaussian blur." + System.lineSeparator()
+            + "show message: Applied gaussian blur: sigma 2.5" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Error reading radius, \"big\" not a integer."
+            + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Error reading sigma, \"wide\" not a number." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "applying box blur, radius: 5" + System.lineSeparator()
+            + "applying gaussian blur, sigma: 2.5" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that blur arguments the model rejects give its error message to the user.
+   */
+  @Test
+  public void testIllegalBlurArguments() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelIllegalBlur(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg boxblur -1 gaussianblur -1 quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying box blur." + System.lineSeparator()
+            + "show message: Mock box blur radius rejected." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying gaussian blur." + System.lineSeparator()
+            + "show message: Mock gaussian blur sigma rejected." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "MODEL: illegal box blur radius -1" + System.lineSeparator()
+            + "MODEL: illegal gaussian blur sigma -1.0" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that clahe reads its tiles and clip limit and reports ones that aren't numbers.
+   */
+  @Test
+  public void testClahe() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelParent(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg clahe 8 4 2.5 clahe 8 x "
+            + "clahe 8 8 high quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying adaptive histogram equalization." + System.lineSeparator()
+            + "show message: Applied adaptive histogram equalization: 8x4 tiles, clip limit 2.5"
+            + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Error reading tiles down, \"x\" not a integer."
+            + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Error reading clip limit, \"high\" not a number."
+            + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "applying clahe, tiles: 8x4, clip limit: 2.5" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that clahe settings the model rejects give its error message to the user.
+   */
+  @Test
+  public void testIllegalClahe() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelIllegalClahe(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg clahe 0 8 2 quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying adaptive histogram equalization." + System.lineSeparator()
+            + "show message: Mock clahe settings rejected." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "MODEL: illegal clahe settings" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that kernel and colormatrix read their weights row by row and report invalid ones.
+   */
+  @Test
+  public void testKernelAndColorMatrix() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelParent(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg kernel 3 2 1 2 1 0.5 0 -0.5 "
+            + "colormatrix 0 1 0 1 0 0 0 0 1 kernel 0 1 kernel 1 1 x quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying kernel." + System.lineSeparator()
+            + "show message: Applied 3x2 kernel." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying color matrix." + System.lineSeparator()
+            + "show message: Applied color matrix." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Error reading kernel, 0x1 not a valid size."
+            + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Error reading kernel weight, \"x\" not a number."
+            + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "applying kernel: [[1.0, 2.0, 1.0], [0.5, 0.0, -0.5]]" + System.lineSeparator()
+            + "applying color matrix: [[0.0, 1.0, 0.0], [1.0, 0.0, 0.0], [0.0, 0.0, 1.0]]"
+            + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that kernels and color matrices the model rejects give its error message to the user.
+   */
+  @Test
+  public void testIllegalKernelAndColorMatrix() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelIllegalMatrix(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg kernel 1 1 NaN "
+            + "colormatrix 1 0 0 0 1 0 0 0 NaN quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying kernel." + System.lineSeparator()
+            + "show message: Mock kernel rejected." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying color matrix." + System.lineSeparator()
+            + "show message: Mock color matrix rejected." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "MODEL: illegal kernel" + System.lineSeparator()
+            + "MODEL: illegal color matrix" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that threads sets the number of threads and reports counts that aren't integers.
+   */
+  @Test
+  public void testThreads() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelParent(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg threads 4 threads 1 "
+            + "threads many quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Using 4 threads." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Using 1 thread." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Error setting threads, \"many\" not a positive integer."
+            + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "setting threads: 4" + System.lineSeparator()
+            + "setting threads: 1" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that a number of threads the model rejects is reported to the user.
+   */
+  @Test
+  public void testIllegalThreads() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelIllegalThreads(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg threads 0 quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Error setting threads, \"0\" not a positive integer."
+            + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "MODEL: illegal thread count 0" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that fusion sets the fusion mode and reports unknown modes.
+   */
+  @Test
+  public void testFusion() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelParent(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg fusion Fused blur blur "
+            + "fusion exact fusion maybe quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Filter fusion set to fused." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying blur." + System.lineSeparator()
+            + "show message: Applied blur." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying blur." + System.lineSeparator()
+            + "show message: Applied blur." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Filter fusion set to exact." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Error setting fusion, \"maybe\" not one of off, exact or fused."
+            + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "setting fusion: FUSED" + System.lineSeparator()
+            + "applying blur" + System.lineSeparator()
+            + "applying blur" + System.lineSeparator()
+            + "setting fusion: EXACT" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+
+  /**
+   * Tests that edgedetection applies an edge detection, with the fast magnitude when followed by
+   * fast.
+   */
+  @Test
+  public void testEdgeDetection() {
+    //Create model
+    StringBuilder modelLog = new StringBuilder();
+    ImageModel m = new MockImageModelParent(modelLog);
+
+    // Create controller
+    StringReader input = new StringReader("load mock-load.jpg edgedetection edgedetection Fast "
+            + "quit");
+    ConcreteImageController c = new ConcreteImageController(m, v);
+
+    c.executeBatchCommands(input);
+
+    // Check view log
+    String expectedView = "show message: Program has started." + System.lineSeparator()
+            + "Prompting for an image." + System.lineSeparator()
+            + "show message: Load the image:" + System.lineSeparator()
+            + "show message: Loading mock-load.jpg" + System.lineSeparator()
+            + "show message: Loaded mock-load.jpg" + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying edge detection." + System.lineSeparator()
+            + "show message: Applied edge detection." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Applying edge detection." + System.lineSeparator()
+            + "show message: Applied edge detection." + System.lineSeparator()
+            + "Prompting for input." + System.lineSeparator()
+            + "show message: Exiting program." + System.lineSeparator();
+    assertEquals(expectedView, this.viewLog.toString());
+
+    // Check model log
+    String expectedModel = "loading image: mock-load.jpg" + System.lineSeparator()
+            + "applying edge detection" + System.lineSeparator()
+            + "applying edge detection, fast: true" + System.lineSeparator();
+    assertEquals(expectedModel, modelLog.toString());
+  }
+}
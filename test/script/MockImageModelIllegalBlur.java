@@ -0,0 +1,41 @@
+package script;
+
+/**
+ * Mock image model that throws error when applying a box or gaussian blur.
+ */
+public class MockImageModelIllegalBlur extends MockImageModelParent {
+
+  /**
+   * Constructor for MockImageModelIllegalBlur.
+   *
+   * @param modelLog log to write to
+   */
+  public MockImageModelIllegalBlur(StringBuilder modelLog) {
+    super(modelLog);
+  }
+
+  /**
+   * Apply a box blur to the data in the image model.
+   *
+   * @param radius the number of pixels the blur reaches out from each pixel
+   * @throws IllegalArgumentException always
+   */
+  @Override
+  public void applyBoxBlur(int radius) {
+    super.modelLog.append("MODEL: illegal box blur radius " + radius + System.lineSeparator());
+    throw new IllegalArgumentException("Mock box blur radius rejected.");
+  }
+
+  /**
+   * Apply a gaussian blur to the data in the image model.
+   *
+   * @param sigma the standard deviation of the gaussian in pixels
+   * @throws IllegalArgumentException always
+   */
+  @Override
+  public void applyGaussianBlur(double sigma) {
+    super.modelLog.append("MODEL: illegal gaussian blur sigma " + sigma
+            + System.lineSeparator());
+    throw new IllegalArgumentException("Mock gaussian blur sigma rejected.");
+  }
+}
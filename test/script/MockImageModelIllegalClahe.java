@@ -0,0 +1,30 @@
+package script;
+
+/**
+ * Mock image model that throws error when applying adaptive histogram equalization.
+ */
+public class MockImageModelIllegalClahe extends MockImageModelParent {
+
+  /**
+   * Constructor for MockImageModelIllegalClahe.
+   *
+   * @param modelLog log to write to
+   */
+  public MockImageModelIllegalClahe(StringBuilder modelLog) {
+    super(modelLog);
+  }
+
+  /**
+   * Equalizes the histogram of each tile of the image.
+   *
+   * @param tilesX    the number of tiles across the image
+   * @param tilesY    the number of tiles down the image
+   * @param clipLimit the clip limit of the tile histograms
+   * @throws IllegalArgumentException always
+   */
+  @Override
+  public void applyClahe(int tilesX, int tilesY, double clipLimit) {
+    super.modelLog.append("MODEL: illegal clahe settings" + System.lineSeparator());
+    throw new IllegalArgumentException("Mock clahe settings rejected.");
+  }
+}
@@ -0,0 +1,40 @@
+package script;
+
+/**
+ * Mock image model that throws error when applying a kernel or a color matrix.
+ */
+public class MockImageModelIllegalMatrix extends MockImageModelParent {
+
+  /**
+   * Constructor for MockImageModelIllegalMatrix.
+   *
+   * @param modelLog log to write to
+   */
+  public MockImageModelIllegalMatrix(StringBuilder modelLog) {
+    super(modelLog);
+  }
+
+  /**
+   * Filter the data in the image model with a given kernel.
+   *
+   * @param kernel the filter kernel, every row the same length
+   * @throws IllegalArgumentException always
+   */
+  @Override
+  public void applyKernel(double[][] kernel) {
+    super.modelLog.append("MODEL: illegal kernel" + System.lineSeparator());
+    throw new IllegalArgumentException("Mock kernel rejected.");
+  }
+
+  /**
+   * Apply a given color transformation matrix to the data in the image model.
+   *
+   * @param matrix the 3x3 color transformation matrix
+   * @throws IllegalArgumentException always
+   */
+  @Override
+  public void applyColorMatrix(double[][] matrix) {
+    super.modelLog.append("MODEL: illegal color matrix" + System.lineSeparator());
+    throw new IllegalArgumentException("Mock color matrix rejected.");
+  }
+}
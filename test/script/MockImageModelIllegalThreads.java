@@ -0,0 +1,28 @@
+package script;
+
+/**
+ * Mock image model that throws error when setting the number of threads.
+ */
+public class MockImageModelIllegalThreads extends MockImageModelParent {
+
+  /**
+   * Constructor for MockImageModelIllegalThreads.
+   *
+   * @param modelLog log to write to
+   */
+  public MockImageModelIllegalThreads(StringBuilder modelLog) {
+    super(modelLog);
+  }
+
+  /**
+   * Sets how many threads filters may use.
+   *
+   * @param threads the number of threads
+   * @throws IllegalArgumentException always
+   */
+  @Override
+  public void setParallelism(int threads) {
+    super.modelLog.append("MODEL: illegal thread count " + threads + System.lineSeparator());
+    throw new IllegalArgumentException("Mock thread count rejected.");
+  }
+}
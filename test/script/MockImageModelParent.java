@@ -1,7 +1,10 @@
 package script;
 
+import images.EdgeMode;
+import images.FusionMode;
 import images.ImageModel;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 /**
  * The main mock model for the controller unit tests. Returns all methods as successful.
@@ -30,6 +33,23 @@ public class MockImageModelParent implements ImageModel {
     this.modelLog.append("loading image: " + filename + System.lineSeparator());
   }
 
+  /**
+   * Load part of an image into the image model, keeping only every few pixels.
+   *
+   * @param filename    the name of the file containing the image.
+   * @param startX      the column of the first pixel to load
+   * @param startY      the row of the first pixel to load
+   * @param width       the width of the region to load in pixels
+   * @param height      the height of the region to load in pixels
+   * @param subsampling the distance between loaded pixels in both directions
+   */
+  @Override
+  public void loadImage(String filename, int startX, int startY, int width, int height,
+                        int subsampling) {
+    this.modelLog.append(String.format("loading image region: %s %d %d %d %d %d", filename,
+            startX, startY, width, height, subsampling) + System.lineSeparator());
+  }
+
   /**
    * Save the data in the image model to a file.
    *
@@ -58,6 +78,48 @@ public class MockImageModelParent implements ImageModel {
     this.modelLog.append("applying sharpen" + System.lineSeparator());
   }
 
+  /**
+   * Apply a box blur to the data in the image model.
+   *
+   * @param radius the number of pixels the blur reaches out from each pixel
+   */
+  @Override
+  public void applyBoxBlur(int radius) {
+    this.modelLog.append("applying box blur, radius: " + radius + System.lineSeparator());
+  }
+
+  /**
+   * Apply a gaussian blur to the data in the image model.
+   *
+   * @param sigma the standard deviation of the gaussian in pixels
+   */
+  @Override
+  public void applyGaussianBlur(double sigma) {
+    this.modelLog.append("applying gaussian blur, sigma: " + sigma + System.lineSeparator());
+  }
+
+  /**
+   * Filter the data in the image model with a given kernel.
+   *
+   * @param kernel the filter kernel, every row the same length
+   */
+  @Override
+  public void applyKernel(double[][] kernel) {
+    this.modelLog.append("applying kernel: " + Arrays.deepToString(kernel)
+            + System.lineSeparator());
+  }
+
+  /**
+   * Apply a given color transformation matrix to the data in the image model.
+   *
+   * @param matrix the 3x3 color transformation matrix
+   */
+  @Override
+  public void applyColorMatrix(double[][] matrix) {
+    this.modelLog.append("applying color matrix: " + Arrays.deepToString(matrix)
+            + System.lineSeparator());
+  }
+
   /**
    * Apply the grayscale color transformation to the data in the image model.
    */
@@ -102,6 +164,17 @@ public class MockImageModelParent implements ImageModel {
     this.modelLog.append("applying edge detection" + System.lineSeparator());
   }
 
+  /**
+   * Logs the application of an edge detection with the given magnitude.
+   *
+   * @param fastMagnitude whether to use the faster approximate gradient magnitude
+   */
+  @Override
+  public void applyEdgeDetection(boolean fastMagnitude) {
+    this.modelLog.append("applying edge detection, fast: " + fastMagnitude
+            + System.lineSeparator());
+  }
+
   /**
    * Crops the image by discarding pixels before the lower bounds and after the upper bounds.
    *
@@ -138,10 +211,63 @@ public class MockImageModelParent implements ImageModel {
     this.modelLog.append("applying histogram equalization" + System.lineSeparator());
   }
 
+  /**
+   * Equalizes the histogram of each tile of the image.
+   *
+   * @param tilesX    the number of tiles across the image
+   * @param tilesY    the number of tiles down the image
+   * @param clipLimit the clip limit of the tile histograms
+   */
+  @Override
+  public void applyClahe(int tilesX, int tilesY, double clipLimit) {
+    this.modelLog.append("applying clahe, tiles: " + tilesX + "x" + tilesY + ", clip limit: "
+            + clipLimit + System.lineSeparator());
+  }
+
+  /**
+   * Sets how pixels beyond the edges of the image are treated.
+   *
+   * @param edgeMode how pixels outside the image are treated
+   */
+  @Override
+  public void setEdgeMode(EdgeMode edgeMode) {
+    this.modelLog.append("setting edge mode: " + edgeMode + System.lineSeparator());
+  }
+
+  /**
+   * Sets when consecutive filters are composed.
+   *
+   * @param fusionMode when consecutive filters are composed
+   */
+  @Override
+  public void setFusionMode(FusionMode fusionMode) {
+    this.modelLog.append("setting fusion: " + fusionMode + System.lineSeparator());
+  }
+
+  /**
+   * Sets how many threads image operations may use.
+   *
+   * @param threads the number of threads
+   */
+  @Override
+  public void setParallelism(int threads) {
+    this.modelLog.append("setting threads: " + threads + System.lineSeparator());
+  }
+
   @Override
   public BufferedImage getBufferedImage() {
     return null;
   }
 
+  @Override
+  public BufferedImage getBufferedImageSnapshot() {
+    return null;
+  }
+
+  @Override
+  public int[][] getHistograms() {
+    return new int[3][256];
+  }
+
 
 }
@@ -34,6 +34,16 @@ public class MockImageView implements ImageView {
     viewLog.append("Prompting for input." + System.lineSeparator());
   }
 
+  /**
+   * Returns false, like the text view the mock only logs messages.
+   *
+   * @return false
+   */
+  @Override
+  public boolean showsImage() {
+    return false;
+  }
+
   /**
    * Prompts a user to load an image to start.
    */